@@ -0,0 +1,19 @@
+package android.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stand-in for the platform annotation.
+ */
+@Target({
+        ElementType.TYPE, ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER,
+        ElementType.CONSTRUCTOR, ElementType.LOCAL_VARIABLE
+})
+@Retention(RetentionPolicy.CLASS)
+public @interface SuppressLint {
+
+    String[] value();
+}
@@ -0,0 +1,12 @@
+package android.graphics;
+
+/**
+ * Stand-in for the platform class. Only needed to compile the podcast
+ * type, the benchmarks do not load logos.
+ */
+public class Bitmap {
+
+    public static Bitmap createBitmap(Bitmap source) {
+        return source;
+    }
+}
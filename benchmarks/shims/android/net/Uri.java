@@ -0,0 +1,41 @@
+package android.net;
+
+import java.net.URI;
+
+/**
+ * Stand-in for the platform class, backed by {@link URI}.
+ */
+public class Uri {
+
+    private final URI uri;
+
+    private Uri(URI uri) {
+        this.uri = uri;
+    }
+
+    public static Uri parse(String uriString) {
+        return new Uri(URI.create(uriString));
+    }
+
+    public boolean isRelative() {
+        return !uri.isAbsolute();
+    }
+
+    public String getScheme() {
+        return uri.getScheme();
+    }
+
+    public String getAuthority() {
+        return uri.getAuthority();
+    }
+
+    public String getPath() {
+        return uri.getPath();
+    }
+
+    public String getLastPathSegment() {
+        final String path = uri.getPath();
+
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,74 @@
+package android.text;
+
+/**
+ * Stand-in for the platform class. Like the real one, this drops tags,
+ * collapses white space and decodes entities, but it knows only the most
+ * common entities and returns a plain string.
+ */
+public class Html {
+
+    public static CharSequence fromHtml(String source) {
+        final StringBuilder result = new StringBuilder(source.length());
+        boolean space = true;
+
+        for (int index = 0; index < source.length(); index++) {
+            char c = source.charAt(index);
+
+            if (c == '<') {
+                final int end = source.indexOf('>', index);
+                if (end > 0) {
+                    index = end;
+                    continue;
+                }
+            } else if (c == '&') {
+                final int end = source.indexOf(';', index);
+                if (end > 0) {
+                    final char decoded = decode(source.substring(index + 1, end));
+                    if (decoded != 0) {
+                        c = decoded;
+                        index = end;
+                    }
+                }
+            }
+
+            if (Character.isWhitespace(c)) {
+                if (!space)
+                    result.append(' ');
+                space = true;
+            } else {
+                result.append(c);
+                space = false;
+            }
+        }
+
+        return result.toString().trim();
+    }
+
+    private static char decode(String entity) {
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return ' ';
+            default:
+                try {
+                    if (entity.startsWith("#x"))
+                        return (char) Integer.parseInt(entity.substring(2), 16);
+                    else if (entity.startsWith("#"))
+                        return (char) Integer.parseInt(entity.substring(1));
+                } catch (NumberFormatException e) {
+                    // Not an entity
+                }
+
+                return 0;
+        }
+    }
+}
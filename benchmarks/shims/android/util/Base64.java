@@ -0,0 +1,14 @@
+package android.util;
+
+/**
+ * Stand-in for the platform class. Only needed to compile the podcast
+ * type, the benchmarks do not use authorization.
+ */
+public class Base64 {
+
+    public static final int NO_WRAP = 2;
+
+    public static String encodeToString(byte[] input, int flags) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,67 @@
+package android.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the platform class, an access-ordered map trimmed to its
+ * maximum size on each put.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(0, 0.75f, true);
+    private final int maxSize;
+    private int size;
+
+    public LruCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    public final synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    public final synchronized V put(K key, V value) {
+        final V previous = map.put(key, value);
+
+        size += sizeOf(key, value);
+        if (previous != null)
+            size -= sizeOf(key, previous);
+
+        final Iterator<Map.Entry<K, V>> entries = map.entrySet().iterator();
+        while (size > maxSize && entries.hasNext()) {
+            final Map.Entry<K, V> eldest = entries.next();
+
+            size -= sizeOf(eldest.getKey(), eldest.getValue());
+            entries.remove();
+        }
+
+        return previous;
+    }
+
+    public final synchronized V remove(K key) {
+        final V previous = map.remove(key);
+        if (previous != null)
+            size -= sizeOf(key, previous);
+
+        return previous;
+    }
+
+    public final synchronized void evictAll() {
+        map.clear();
+        size = 0;
+    }
+
+    public final synchronized int size() {
+        return size;
+    }
+
+    public final synchronized int maxSize() {
+        return maxSize;
+    }
+}
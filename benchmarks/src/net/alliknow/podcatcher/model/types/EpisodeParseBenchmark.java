@@ -0,0 +1,93 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.alliknow.podcatcher.model.types;
+
+import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.tags.RSS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Episode#parse(XmlPullParser)} alone, without the channel
+ * level handling done by the podcast. One operation is all the items of one
+ * feed, divide by the episode count for the cost per episode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EpisodeParseBenchmark {
+
+    @Param({
+            "itunes.xml", "huge.xml"
+    })
+    public String feed;
+
+    /** The feed file content */
+    private byte[] content;
+    /** The podcast the episodes belong to */
+    private Podcast podcast;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = FeedCorpus.load(feed);
+        podcast = new Podcast(null, "http://corpus.example.com/" + feed);
+    }
+
+    @Benchmark
+    public void parseItems(Blackhole blackhole) throws XmlPullParserException, IOException {
+        final XmlPullParser parser = ParserUtils.getParser(true);
+
+        try {
+            parser.setInput(new ByteArrayInputStream(content), null);
+
+            int index = 0;
+            int eventType = parser.next();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG && RSS.ITEM.equals(parser.getName())) {
+                    final Episode episode = new Episode(podcast, index++);
+                    episode.parse(parser);
+
+                    blackhole.consume(episode);
+                }
+
+                eventType = parser.next();
+            }
+        } finally {
+            ParserUtils.releaseParser(parser);
+        }
+    }
+}
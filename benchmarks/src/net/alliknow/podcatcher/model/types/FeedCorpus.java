@@ -0,0 +1,82 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.alliknow.podcatcher.model.types;
+
+import net.alliknow.podcatcher.model.ParserUtils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Access to the recorded feeds shared with the test project. The directory
+ * is taken from the "podcatcher.corpus" system property and defaults to the
+ * test project's assets, relative to the benchmarks project.
+ */
+final class FeedCorpus {
+
+    /** The system property to set the corpus directory with */
+    static final String CORPUS_PROPERTY = "podcatcher.corpus";
+    /** The corpus directory used if the property is not set */
+    private static final String DEFAULT_CORPUS = "../tests/assets/feeds";
+
+    private FeedCorpus() {
+    }
+
+    /**
+     * Read one of the recorded feeds.
+     * 
+     * @param feed The feed's file name, e.g. "itunes.xml".
+     * @return The complete feed file.
+     * @throws IOException If the file cannot be read.
+     */
+    static byte[] load(String feed) throws IOException {
+        final File file = new File(System.getProperty(CORPUS_PROPERTY, DEFAULT_CORPUS), feed);
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            final byte[] result = new byte[(int) in.length()];
+            in.readFully(result);
+
+            return result;
+        }
+    }
+
+    /**
+     * Parse a feed the way the load task does.
+     * 
+     * @param podcast The podcast to parse into.
+     * @param feed The feed file content.
+     * @param incremental Whether to run the incremental mode.
+     * @throws XmlPullParserException On parsing errors.
+     * @throws IOException On I/O errors.
+     */
+    static void parse(Podcast podcast, byte[] feed, boolean incremental)
+            throws XmlPullParserException, IOException {
+        final XmlPullParser parser = ParserUtils.getParser(true);
+
+        try {
+            parser.setInput(new ByteArrayInputStream(feed), null);
+            podcast.parse(parser, incremental);
+        } finally {
+            ParserUtils.releaseParser(parser);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.alliknow.podcatcher.model.types;
+
+import net.alliknow.podcatcher.model.DateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the helpers run for each episode: date parsing, URL
+ * normalization and episode ordering. Except for sorting, one operation is
+ * one call, cycling through the sample values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FeedEntityBenchmark {
+
+    /** Publication dates as found in feeds */
+    private static final String[] DATES = {
+            "Sun, 17 Nov 2013 00:00:00 -0600", "Mon, 04 Nov 2013 09:30:15 EST",
+            "Mon, 04 Nov 2013 09:30:15 GMT", "Mon, 04 Nov 13 09:30:15 +0000",
+            "Tue, 05 Nov 2013 12:00:00 PDT", "Fri, 05 Jul 2013 12:00:00 CEST",
+            "Tue, 05 Nov 2013", "2013-11-17T10:20:30Z", "2013-11-17T12:20:30+02:00",
+            "Sun, 17 Nox 2013 00:00:00 GMT"
+    };
+
+    /** Media URLs already in normal form */
+    private static final String[] NORMALIZED_URLS = {
+            "http://traffic.libsyn.com/show/episode_1.mp3",
+            "https://media.example.com/a/b/c.mp3?dl=1&x=2",
+            "http://feeds.feedburner.com/~r/show/~5/abc/file.mp3",
+            "http://www.npr.org/rss/podcast.php?id=510289",
+            "http://media.example.com/itunes/episode-1.mp3?source=feed"
+    };
+
+    /** Media URLs normalization changes */
+    private static final String[] CHANGED_URLS = {
+            "HTTP://Lectures.Example.org/media/../media/lecture-1.m4a",
+            "http://Media.Example.com:80/smalltalk/episode2.mp3",
+            "http://example.com/a/", " http://example.com/a ",
+            "https://example.com:443/a"
+    };
+
+    /** The feed the episodes to sort are taken from */
+    private static final String SORT_FEED = "huge.xml";
+
+    /** Used to call the URL normalization on */
+    private Episode entity;
+    /** The episodes in random order */
+    private List<Episode> shuffled;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://corpus.example.com/" + SORT_FEED);
+        FeedCorpus.parse(podcast, FeedCorpus.load(SORT_FEED), false);
+
+        entity = new Episode(podcast, 0);
+        shuffled = new ArrayList<>(podcast.getEpisodes());
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    @Benchmark
+    public long parse() {
+        return DateParser.parse(next(DATES));
+    }
+
+    @Benchmark
+    public Date parseDate() {
+        return DateParser.parseDate(next(DATES));
+    }
+
+    @Benchmark
+    public String normalizeNormalizedUrl() {
+        return entity.normalizeUrl(next(NORMALIZED_URLS));
+    }
+
+    @Benchmark
+    public String normalizeChangedUrl() {
+        return entity.normalizeUrl(next(CHANGED_URLS));
+    }
+
+    /**
+     * Sort all the episodes of the feed, this includes copying the list.
+     */
+    @Benchmark
+    public List<Episode> sortEpisodes() {
+        final List<Episode> episodes = new ArrayList<>(shuffled);
+        Collections.sort(episodes);
+
+        return episodes;
+    }
+
+    private String next(String[] values) {
+        index = index + 1 < values.length ? index + 1 : 0;
+
+        return values[index];
+    }
+}
@@ -0,0 +1,86 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.alliknow.podcatcher.model.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Podcast#parse(org.xmlpull.v1.XmlPullParser, boolean)} on
+ * the recorded feeds. One operation is one complete feed, run with
+ * "-prof gc" to see the bytes allocated per feed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PodcastParseBenchmark {
+
+    @Param({
+            "small.xml", "itunes.xml", "huge.xml", "atomish.xml"
+    })
+    public String feed;
+
+    /** The feed file content */
+    private byte[] content;
+    /** A podcast with the feed loaded, to refresh */
+    private Podcast loaded;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        content = FeedCorpus.load(feed);
+
+        loaded = new Podcast(null, "http://corpus.example.com/" + feed);
+        FeedCorpus.parse(loaded, content, false);
+    }
+
+    /**
+     * A podcast loaded for the first time.
+     */
+    @Benchmark
+    public Podcast parse() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://corpus.example.com/" + feed);
+        FeedCorpus.parse(podcast, content, false);
+
+        return podcast;
+    }
+
+    /**
+     * A podcast refreshed without any new episodes.
+     */
+    @Benchmark
+    public Podcast refresh() throws XmlPullParserException, IOException {
+        FeedCorpus.parse(loaded, content, true);
+
+        return loaded;
+    }
+}
@@ -26,6 +26,7 @@ import android.content.Intent;
 import android.os.Bundle;
 
 import net.alliknow.podcatcher.listeners.OnLoadPodcastListener;
+import net.alliknow.podcatcher.model.PodcastLoadScheduler.Priority;
 import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
 import net.alliknow.podcatcher.model.types.Podcast;
 import net.alliknow.podcatcher.model.types.Progress;
@@ -125,7 +126,7 @@ public class AddPodcastActivity extends BaseActivity implements AddPodcastDialog
             // We need to keep note which podcast we are loading
             currentLoadUrl = newPodcast.getUrl();
 
-            podcastManager.load(newPodcast);
+            podcastManager.load(newPodcast, Priority.SELECTED);
         }
     }
 
@@ -184,7 +185,7 @@ public class AddPodcastActivity extends BaseActivity implements AddPodcastDialog
         newPodcast.setUsername(username);
         newPodcast.setPassword(password);
 
-        podcastManager.load(newPodcast);
+        podcastManager.load(newPodcast, Priority.SELECTED);
     }
 
     @Override
@@ -22,7 +22,9 @@ import static net.alliknow.podcatcher.view.fragments.AuthorizationFragment.USERN
 import android.app.ActionBar;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 
 import net.alliknow.podcatcher.listeners.OnLoadDownloadsListener;
@@ -33,6 +35,8 @@ import net.alliknow.podcatcher.listeners.OnReorderEpisodeListener;
 import net.alliknow.podcatcher.listeners.OnReverseSortingListener;
 import net.alliknow.podcatcher.listeners.OnSelectPodcastListener;
 import net.alliknow.podcatcher.listeners.OnToggleFilterListener;
+import net.alliknow.podcatcher.model.EpisodeListMerger;
+import net.alliknow.podcatcher.model.PodcastLoadScheduler.Priority;
 import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
 import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.Podcast;
@@ -45,8 +49,9 @@ import net.alliknow.podcatcher.view.fragments.EpisodeListFragment;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -65,17 +70,128 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
     public static final String MODE_KEY = "mode_key";
     /** Key used to store podcast URL in intent or bundle */
     public static final String PODCAST_URL_KEY = "podcast_url_key";
+    /** Update the episode list at most this often while podcasts are loading */
+    private static final int UPDATE_EPISODE_LIST_DELAY = 500;
 
     /** The current episode list fragment */
     protected EpisodeListFragment episodeListFragment;
     /** The content mode selection spinner view */
     protected ContentSpinner contentSpinner;
 
-    /** The current episode set (ordered) */
+    /**
+     * The current episode set (ordered), in all podcasts mode this only holds
+     * the special episodes
+     */
     private SortedSet<Episode> currentEpisodeSet = new TreeSet<>();
+    /**
+     * The ordered episode lists per podcast for the all podcasts mode, by
+     * identity since a podcast's hash code changes when its feed moves. Only
+     * the entry of the podcast loaded is updated, so updates only need to merge
+     * these.
+     */
+    private final Map<Podcast, List<Episode>> podcastEpisodeLists = new IdentityHashMap<>();
+    /** The number of episodes in the all podcasts list shown last */
+    private int mergedEpisodeCount = 0;
     /** Load failed counter for all podcasts selected mode */
     private int loadFailedCounter = 0;
 
+    /** The generation of the episode list, stale updates are dropped */
+    private int episodeListGeneration = 0;
+    /** Flag indicating whether an episode list update is scheduled */
+    private boolean episodeListUpdatePending = false;
+    /** The handler delaying episode list updates */
+    private final Handler updateEpisodeListHandler = new Handler();
+    /** The runnable doing the delayed episode list update */
+    private final Runnable updateEpisodeListRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            updateEpisodeListUi();
+        }
+    };
+
+    /**
+     * The task building the episode list shown. Merging, filtering and
+     * reversing happens off the UI thread, because it can be quite expensive
+     * when showing all podcasts.
+     */
+    private class UpdateEpisodeListTask extends AsyncTask<Void, Void, List<Episode>> {
+
+        /** The generation of the list we create */
+        private final int generation;
+        /**
+         * The ordered per podcast lists to merge, only set in all podcasts
+         * mode
+         */
+        private final List<List<Episode>> podcastLists;
+        /** The ordered episodes to show (in addition to the podcast lists) */
+        private final List<Episode> episodes;
+        /** Whether to filter old episodes */
+        private final boolean filter;
+        /** Whether to reverse the order */
+        private final boolean reverse;
+
+        /** The number of episodes before filtering */
+        private int episodeCount;
+
+        private UpdateEpisodeListTask(int generation) {
+            final boolean playlist = ContentMode.PLAYLIST.equals(selection.getMode());
+
+            // Take a snapshot of the current state, the podcast episode lists
+            // never change and can be used as they are
+            this.generation = generation;
+            this.podcastLists = selection.isAll() ?
+                    new ArrayList<>(podcastEpisodeLists.values()) : null;
+            this.episodes = new ArrayList<>(currentEpisodeSet);
+            // Further refine the episode list if not in playlist mode
+            this.filter = !playlist && selection.isEpisodeFilterEnabled();
+            this.reverse = !playlist && selection.isEpisodeOrderReversed();
+        }
+
+        @Override
+        protected List<Episode> doInBackground(Void... params) {
+            List<Episode> result = episodes;
+
+            if (podcastLists != null) {
+                podcastLists.add(episodes);
+
+                result = EpisodeListMerger.merge(podcastLists);
+            }
+
+            this.episodeCount = result.size();
+
+            // Apply the filter
+            if (filter) {
+                final List<Episode> filteredList = new ArrayList<>(result.size());
+
+                for (Episode episode : result)
+                    if (!episodeManager.getState(episode))
+                        filteredList.add(episode);
+
+                result = filteredList;
+            }
+
+            // We might need to reverse the order of our list, but there is no
+            // need for sorting since we already come from a sorted list. All
+            // lists here are our own copies, so this is safe.
+            if (reverse)
+                Collections.reverse(result);
+
+            return result;
+        }
+
+        @Override
+        protected void onPostExecute(List<Episode> filteredList) {
+            // Only show the most recent list
+            if (generation == episodeListGeneration) {
+                if (podcastLists != null)
+                    mergedEpisodeCount = episodeCount;
+
+                showEpisodeList(filteredList, episodeCount);
+            }
+        }
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -125,6 +241,9 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
         podcastManager.removeLoadPodcastListener(this);
         podcastManager.removeLoadPodcastLogoListener(this);
+
+        // Drop any episode list update in flight
+        resetEpisodeListUpdates();
     }
 
     @Override
@@ -158,6 +277,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
         this.currentEpisodeSet = new TreeSet<>();
         this.loadFailedCounter = 0;
+        resetEpisodeListUpdates();
 
         switch (view) {
             case SMALL_LANDSCAPE:
@@ -175,7 +295,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
                 updateFilterUi();
 
                 // Load podcast...
-                podcastManager.load(podcast);
+                podcastManager.load(podcast, Priority.SELECTED);
                 // ... and special episodes
                 episodeManager.getDownloadsAsync(this, podcast);
                 episodeManager.getPlaylistAsync(this, podcast);
@@ -194,6 +314,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
         this.currentEpisodeSet = new TreeSet<>();
         this.loadFailedCounter = 0;
+        resetEpisodeListUpdates();
 
         switch (view) {
             case SMALL_LANDSCAPE:
@@ -237,6 +358,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.setMode(ContentMode.SINGLE_PODCAST);
 
         currentEpisodeSet.clear();
+        resetEpisodeListUpdates();
 
         if (!view.isSmallPortrait()) {
             // If there is an episode list visible, reset it
@@ -255,6 +377,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.setMode(ContentMode.DOWNLOADS);
 
         this.currentEpisodeSet = new TreeSet<>();
+        resetEpisodeListUpdates();
 
         switch (view) {
             case SMALL_LANDSCAPE:
@@ -291,6 +414,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
                         - episodeManager.getPlaylistPosition(another);
             }
         });
+        resetEpisodeListUpdates();
 
         switch (view) {
             case SMALL_LANDSCAPE:
@@ -328,8 +452,13 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
     @Override
     public void onPodcastLoaded(Podcast podcast) {
-        // Update list fragment to show episode list
-        if (selection.isAll() || selection.isSingle() && podcast.equals(selection.getPodcast())) {
+        // Update list fragment to show episode list, in all podcasts mode
+        // the podcast's list replaces the one from any earlier load
+        if (selection.isAll()) {
+            // Most feeds are ordered already, so this usually only checks
+            podcastEpisodeLists.put(podcast, EpisodeListMerger.sort(podcast.getEpisodes()));
+            requestEpisodeListUpdate();
+        } else if (selection.isSingle() && podcast.equals(selection.getPodcast())) {
             currentEpisodeSet.addAll(podcast.getEpisodes());
             updateEpisodeListUi();
         }
@@ -374,14 +503,15 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         // One of potentially many podcasts failed
         else if (selection.isAll()) {
             // The last podcast failed and we have no episodes at all
-            if (podcastManager.getLoadCount() == 0 && currentEpisodeSet.isEmpty())
+            if (podcastManager.getLoadCount() == 0 && !hasCurrentEpisodes())
                 episodeListFragment.showLoadAllFailed();
             // One of many podcasts failed to load
             else {
-                updateEpisodeListUi();
+                requestEpisodeListUpdate();
 
-                // Show toast if this happened for the first time
-                if (failedPodcast.getFailedLoadAttemptCount() == 1)
+                // Show toast if this happened for the first time since
+                // the app started
+                if (failedPodcast.getSessionFailedLoadAttemptCount() == 1)
                     showToast(getString(R.string.podcast_load_multiple_error,
                             failedPodcast.getName()));
             }
@@ -402,7 +532,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
             // Update the UI unless the podcast is still loading
             if (!(selection.isSingle() && podcastManager.isLoading(selection.getPodcast())))
-                updateEpisodeListUi();
+                requestEpisodeListUpdate();
         }
 
         // Update other UI
@@ -420,7 +550,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
             // Update the UI unless the podcast is still loading
             if (!(selection.isSingle() && podcastManager.isLoading(selection.getPodcast())))
-                updateEpisodeListUi();
+                requestEpisodeListUpdate();
         }
 
         // Update other UI
@@ -542,7 +672,8 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             super.onDownloadProgress(episode, percent);
 
         // Check whether the episode is potentially currently displayed
-        if (currentEpisodeSet.contains(episode))
+        if (currentEpisodeSet.contains(episode)
+                || podcastEpisodeLists.containsKey(episode.getPodcast()))
             episodeListFragment.showProgress(episode, percent);
     }
 
@@ -570,7 +701,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
      * Update the sorting menu icon visibility.
      */
     protected void updateSortingUi() {
-        episodeListFragment.setSortMenuItemVisibility(currentEpisodeSet.size() > 1 &&
+        episodeListFragment.setSortMenuItemVisibility(getCurrentEpisodeCount() > 1 &&
                 !ContentMode.PLAYLIST.equals(selection.getMode()),
                 selection.isEpisodeOrderReversed());
     }
@@ -579,7 +710,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
      * Update the filter menu icon visibility.
      */
     protected void updateFilterUi() {
-        episodeListFragment.setFilterMenuItemVisibility(!currentEpisodeSet.isEmpty() &&
+        episodeListFragment.setFilterMenuItemVisibility(hasCurrentEpisodes() &&
                 !ContentMode.PLAYLIST.equals(selection.getMode()),
                 selection.isEpisodeFilterEnabled());
     }
@@ -616,8 +747,8 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         final int loadingPodcastCount = podcastManager.getLoadCount();
 
         // Load finished for all podcasts and there are episodes
-        if (loadingPodcastCount == 0 && !currentEpisodeSet.isEmpty()) {
-            final int episodeCount = currentEpisodeSet.size();
+        if (loadingPodcastCount == 0 && hasCurrentEpisodes()) {
+            final int episodeCount = getCurrentEpisodeCount();
 
             if (episodeCount == 0)
                 contentSpinner.setSubtitle(null);
@@ -637,37 +768,62 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
 
     /**
      * Set the current episode list to show in the episode list fragment using
-     * {@link #currentEpisodeSet} as the basis. This will filter and reverse the
-     * list as needed.
+     * {@link #currentEpisodeSet} (and {@link #podcastEpisodeLists} in all
+     * podcasts mode) as the basis. This will merge, filter and reverse the list
+     * as needed in the background and show it once done.
      */
     private void updateEpisodeListUi() {
-        final List<Episode> filteredList = new ArrayList<>(currentEpisodeSet);
+        // Any pending update is covered by this one
+        updateEpisodeListHandler.removeCallbacks(updateEpisodeListRunnable);
+        episodeListUpdatePending = false;
 
-        // Further refine the episode list if not in playlist mode
-        if (!ContentMode.PLAYLIST.equals(selection.getMode())) {
-            // Apply the filter
-            if (selection.isEpisodeFilterEnabled()) {
-                Iterator<Episode> iterator = filteredList.iterator();
+        new UpdateEpisodeListTask(++episodeListGeneration)
+                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void) null);
+    }
 
-                while (iterator.hasNext())
-                    if (episodeManager.getState(iterator.next()))
-                        iterator.remove();
+    /**
+     * Update the episode list, but while podcasts are still loading in all
+     * podcasts mode, collect the loads finished within
+     * {@link #UPDATE_EPISODE_LIST_DELAY} into one update.
+     */
+    private void requestEpisodeListUpdate() {
+        if (selection.isAll() && podcastManager.getLoadCount() > 0) {
+            if (!episodeListUpdatePending) {
+                episodeListUpdatePending = true;
+                updateEpisodeListHandler.postDelayed(updateEpisodeListRunnable,
+                        UPDATE_EPISODE_LIST_DELAY);
             }
+        } else
+            updateEpisodeListUi();
+    }
 
-            // We might need to reverse the order of our list,
-            // but there is no need for sorting since we already come
-            // from a sorted set.
-            if (selection.isEpisodeOrderReversed())
-                Collections.reverse(filteredList);
-        }
+    /**
+     * Cancel all pending episode list updates and make sure results from
+     * updates in flight are dropped. Call this when the content mode changes.
+     */
+    private void resetEpisodeListUpdates() {
+        updateEpisodeListHandler.removeCallbacks(updateEpisodeListRunnable);
+        episodeListUpdatePending = false;
+        episodeListGeneration++;
 
+        podcastEpisodeLists.clear();
+        mergedEpisodeCount = 0;
+    }
+
+    /**
+     * Show the episode list created by the {@link UpdateEpisodeListTask}.
+     * 
+     * @param filteredList The list to show.
+     * @param episodeCount The number of episodes before filtering.
+     */
+    private void showEpisodeList(List<Episode> filteredList, int episodeCount) {
         // Make sure the episode list fragment shows the right empty view
         if (ContentMode.DOWNLOADS.equals(selection.getMode()))
             episodeListFragment.setEmptyStringId(R.string.downloads_none);
         else if (ContentMode.PLAYLIST.equals(selection.getMode()))
             episodeListFragment.setEmptyStringId(R.string.playlist_empty);
         else if (selection.isEpisodeFilterEnabled()
-                && filteredList.isEmpty() && !currentEpisodeSet.isEmpty())
+                && filteredList.isEmpty() && episodeCount > 0)
             episodeListFragment.setEmptyStringId(R.string.episodes_no_new);
         else if (selection.isAll())
             episodeListFragment.setEmptyStringId(R.string.episode_none_all_podcasts);
@@ -685,7 +841,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             episodeListFragment
                     .setShowTopInfoBox(true, getString(R.string.podcast_load_multiple_error_some));
         else if (selection.isEpisodeFilterEnabled()) {
-            final int filteredCount = currentEpisodeSet.size() - filteredList.size();
+            final int filteredCount = episodeCount - filteredList.size();
 
             episodeListFragment.setShowTopInfoBox(
                     filteredCount > 0, getResources().getQuantityString(
@@ -697,6 +853,35 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         // Finally set the list and make sure selection matches
         episodeListFragment.setEpisodeList(filteredList);
         updateEpisodeListSelection();
+
+        // The number of episodes is only known now in all podcasts mode
+        if (selection.isAll()) {
+            updateActionBar();
+            updateSortingUi();
+            updateFilterUi();
+        }
+    }
+
+    /**
+     * @return Whether there are any episodes in the current selection.
+     */
+    private boolean hasCurrentEpisodes() {
+        if (!currentEpisodeSet.isEmpty())
+            return true;
+
+        for (List<Episode> episodes : podcastEpisodeLists.values())
+            if (!episodes.isEmpty())
+                return true;
+
+        return false;
+    }
+
+    /**
+     * @return The number of episodes in the current selection. In all podcasts
+     *         mode this is the number of episodes in the list shown last.
+     */
+    private int getCurrentEpisodeCount() {
+        return selection.isAll() ? mergedEpisodeCount : currentEpisodeSet.size();
     }
 
     private boolean shouldAutoDownloadLatestEpisode(Podcast podcast) {
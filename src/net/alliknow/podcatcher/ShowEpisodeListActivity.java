@@ -20,6 +20,7 @@ package net.alliknow.podcatcher;
 import android.os.Bundle;
 import android.view.MenuItem;
 
+import net.alliknow.podcatcher.model.PodcastLoadScheduler.Priority;
 import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
 import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.Podcast;
@@ -119,7 +120,7 @@ public class ShowEpisodeListActivity extends EpisodeListActivity {
         // Init the list view...
         episodeListFragment.resetAndSpin();
         // ... and start loading
-        podcastManager.load(podcast);
+        podcastManager.load(podcast, Priority.SELECTED);
         // ... plus special episodes
         episodeManager.getDownloadsAsync(this, podcast);
         episodeManager.getPlaylistAsync(this, podcast);
@@ -56,14 +56,22 @@ public class EpisodeListAdapter extends PodcatcherBaseListAdapter {
     }
 
     /**
-     * Replace the current episode list with a new one.
+     * Replace the current episode list with a new one. The list view is only
+     * notified if episodes were inserted, removed or moved. Rows that only
+     * changed are left for the caller to update, see
+     * {@link EpisodeListDiff#getChangedPositions()}.
      * 
      * @param episodeList The new list (not <code>null</code>).
+     * @return The difference between the old and the new list.
      */
-    public void updateList(List<Episode> episodeList) {
+    public EpisodeListDiff updateList(List<Episode> episodeList) {
+        final EpisodeListDiff diff = new EpisodeListDiff(list, episodeList);
         this.list = episodeList;
 
-        notifyDataSetChanged();
+        if (diff.isStructural())
+            notifyDataSetChanged();
+
+        return diff;
     }
 
     /**
@@ -73,9 +81,11 @@ public class EpisodeListAdapter extends PodcatcherBaseListAdapter {
      * @param show Whether to show each episode's podcast name.
      */
     public void setShowPodcastNames(boolean show) {
-        this.showPodcastNames = show;
+        if (show != showPodcastNames) {
+            this.showPodcastNames = show;
 
-        notifyDataSetChanged();
+            notifyDataSetChanged();
+        }
     }
 
     @Override
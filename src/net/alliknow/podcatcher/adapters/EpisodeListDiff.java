@@ -0,0 +1,236 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.adapters;
+
+import net.alliknow.podcatcher.model.types.Episode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two episode lists, as needed to update a list view
+ * in place. Episodes are matched by identity (see {@link Episode#equals}),
+ * this finds insertions, removals, moves and rows changed (the same episode
+ * represented by a different instance, e.g. after a podcast reload). The diff
+ * is computed in O(N log N), so it is fine for lists of thousands of
+ * episodes.
+ */
+public class EpisodeListDiff {
+
+    /** The old position for each position in the new list, -1 if inserted */
+    private final int[] oldPositions;
+    /** The new position for each position in the old list, -1 if removed */
+    private final int[] newPositions;
+    /** The positions in the new list with changed rows */
+    private final int[] changedPositions;
+
+    /** The number of episodes inserted */
+    private final int insertedCount;
+    /** The number of episodes removed */
+    private final int removedCount;
+    /** The number of episodes moved */
+    private final int movedCount;
+
+    /**
+     * Compute the difference between two episode lists.
+     * 
+     * @param oldList The list currently shown (not <code>null</code>).
+     * @param newList The list to show instead (not <code>null</code>).
+     */
+    public EpisodeListDiff(List<Episode> oldList, List<Episode> newList) {
+        final int oldSize = oldList.size();
+        final int newSize = newList.size();
+
+        this.oldPositions = new int[newSize];
+        this.newPositions = new int[oldSize];
+        Arrays.fill(newPositions, -1);
+
+        // Index the old list, equal episodes (the list might have duplicates)
+        // are chained in order of their position
+        final Map<Episode, Integer> firstOldPositions = new HashMap<>(oldSize * 2);
+        final int[] nextOldPositions = new int[oldSize];
+        final int[] lastOldPositions = new int[oldSize];
+        for (int position = 0; position < oldSize; position++) {
+            final Episode episode = oldList.get(position);
+            final Integer first = firstOldPositions.get(episode);
+
+            nextOldPositions[position] = -1;
+            if (first == null) {
+                firstOldPositions.put(episode, position);
+                lastOldPositions[position] = position;
+            } else {
+                nextOldPositions[lastOldPositions[first]] = position;
+                lastOldPositions[first] = position;
+            }
+        }
+
+        // Match the new list against it
+        int matchedCount = 0;
+        for (int position = 0; position < newSize; position++) {
+            final Episode episode = newList.get(position);
+            final Integer oldPosition = firstOldPositions.get(episode);
+
+            if (oldPosition == null)
+                oldPositions[position] = -1;
+            else {
+                oldPositions[position] = oldPosition;
+                newPositions[oldPosition] = position;
+                matchedCount++;
+
+                // Equal episodes further down are matched next time
+                final int next = nextOldPositions[oldPosition];
+                if (next < 0)
+                    firstOldPositions.remove(episode);
+                else
+                    firstOldPositions.put(episode, next);
+            }
+        }
+
+        this.insertedCount = newSize - matchedCount;
+        this.removedCount = oldSize - matchedCount;
+
+        // Episodes matched keep their relative order, unless they moved. The
+        // longest increasing run of old positions stays, all others moved.
+        final boolean[] stays = findLongestIncreasingSubsequence(oldPositions);
+        int moved = 0;
+        int changed = 0;
+        final int[] changedCandidates = new int[matchedCount];
+        for (int position = 0; position < newSize; position++)
+            if (oldPositions[position] >= 0) {
+                if (!stays[position])
+                    moved++;
+                else if (oldList.get(oldPositions[position]) != newList.get(position))
+                    changedCandidates[changed++] = position;
+            }
+
+        this.movedCount = moved;
+        this.changedPositions = Arrays.copyOf(changedCandidates, changed);
+    }
+
+    /**
+     * @return Whether the lists are the same, i.e. there is nothing to update.
+     */
+    public boolean isEmpty() {
+        return !isStructural() && changedPositions.length == 0;
+    }
+
+    /**
+     * @return Whether episodes were inserted, removed or moved. If not, the
+     *         list's rows stay where they are and only the rows at
+     *         {@link #getChangedPositions()} need to be updated.
+     */
+    public boolean isStructural() {
+        return insertedCount > 0 || removedCount > 0 || movedCount > 0;
+    }
+
+    /**
+     * @return The number of episodes only present in the new list.
+     */
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    /**
+     * @return The number of episodes only present in the old list.
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @return The number of episodes present in both lists that changed their
+     *         position relative to the others.
+     */
+    public int getMovedCount() {
+        return movedCount;
+    }
+
+    /**
+     * @return The positions in the new list where the episode stayed, but is
+     *         represented by a different instance and its row needs updating.
+     */
+    public int[] getChangedPositions() {
+        return changedPositions;
+    }
+
+    /**
+     * Find the position of an episode from the old list in the new list.
+     * 
+     * @param oldPosition The position in the old list.
+     * @return The new position or -1 if the episode was removed.
+     */
+    public int getNewPosition(int oldPosition) {
+        return oldPosition >= 0 && oldPosition < newPositions.length ?
+                newPositions[oldPosition] : -1;
+    }
+
+    /**
+     * Find the position of an episode from the new list in the old list.
+     * 
+     * @param newPosition The position in the new list.
+     * @return The old position or -1 if the episode was inserted.
+     */
+    public int getOldPosition(int newPosition) {
+        return newPosition >= 0 && newPosition < oldPositions.length ?
+                oldPositions[newPosition] : -1;
+    }
+
+    /**
+     * Find the longest strictly increasing subsequence of the given values,
+     * ignoring negative values. Runs in O(N log N).
+     * 
+     * @param values The values to check.
+     * @return Flags indicating which values are part of the subsequence.
+     */
+    private static boolean[] findLongestIncreasingSubsequence(int[] values) {
+        // tails[length] is the index of the smallest value ending a
+        // subsequence of length + 1, previous links the subsequences
+        final int[] tails = new int[values.length];
+        final int[] previous = new int[values.length];
+        int length = 0;
+
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] < 0)
+                continue;
+
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+
+                if (values[tails[middle]] < values[index])
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            previous[index] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = index;
+            if (low == length)
+                length++;
+        }
+
+        final boolean[] result = new boolean[values.length];
+        for (int index = length > 0 ? tails[length - 1] : -1; index >= 0; index = previous[index])
+            result[index] = true;
+
+        return result;
+    }
+}
@@ -67,11 +67,14 @@ public abstract class PodcatcherBaseListAdapter extends PodcatcherBaseAdapter {
 
     /**
      * Set the selected item in the list and updates the UI to reflect the
-     * selection.
+     * selection. Does nothing if the item is the only one selected already.
      * 
      * @param position Position selected.
      */
     public void setSelectedPosition(int position) {
+        if (!selectAll && selectedPositions.size() == 1 && selectedPositions.get(position))
+            return;
+
         selectAll = false;
         selectedPositions.clear();
         selectedPositions.put(position, true);
@@ -83,6 +86,9 @@ public abstract class PodcatcherBaseListAdapter extends PodcatcherBaseAdapter {
      * Put adapter in select all mode.
      */
     public void setSelectAll() {
+        if (selectAll)
+            return;
+
         selectAll = true;
         selectedPositions.clear();
 
@@ -93,6 +99,9 @@ public abstract class PodcatcherBaseListAdapter extends PodcatcherBaseAdapter {
      * Put adapter in select none mode.
      */
     public void setSelectNone() {
+        if (!selectAll && selectedPositions.size() == 0)
+            return;
+
         selectAll = false;
         selectedPositions.clear();
 
@@ -0,0 +1,378 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ * 
+ * This file is part of PodCatcher Deluxe.
+ * 
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parser for the date strings found in podcast feeds. Understands RFC 822 (as
+ * required by RSS, with or without the day of the week, seconds and the time
+ * zone), as well as RFC 3339 and other ISO 8601 variants used by some feeds.
+ * <p>
+ * The parser is thread-safe and does not lock. It does not parse via
+ * {@link SimpleDateFormat} or {@link Calendar} and does not throw on invalid
+ * input. Time zone names not defined by RFC 822 are looked up once and cached.
+ * Dates without a time zone are taken to be in the default time zone, dates
+ * without a time are taken to be at midnight.
+ * </p>
+ */
+public class DateParser {
+
+    /** The value returned if the string given cannot be parsed */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /** The months' short names as used by RFC 822, all in lower case */
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+    /** Flag for a date string without a (known) time zone */
+    private static final int NO_ZONE = Integer.MIN_VALUE;
+    /** The maximum length of a time zone name we look up */
+    private static final int MAX_ZONE_NAME_LENGTH = 5;
+    /** The date string used to find the offset for a time zone name */
+    private static final String ZONE_PROBE = "01 Jan 2000 00:00:00 ";
+    /** The format to read the zone probe date */
+    private static final String ZONE_PROBE_FORMAT = "dd MMM yyyy HH:mm:ss zzz";
+
+    /** Milliseconds per minute */
+    private static final long MINUTE = 60 * 1000;
+    /** Milliseconds per hour */
+    private static final long HOUR = 60 * MINUTE;
+    /** Milliseconds per day */
+    private static final long DAY = 24 * HOUR;
+
+    /** The time zone offsets (in milliseconds) by upper case zone name */
+    private static final Map<String, Integer> ZONE_OFFSETS = new ConcurrentHashMap<>();
+    /** The current year, used to find the century for two-digit years */
+    private static final int CURRENT_YEAR = Calendar.getInstance().get(Calendar.YEAR);
+
+    static {
+        // These are the zones defined by RFC 822
+        ZONE_OFFSETS.put("GMT", 0);
+        ZONE_OFFSETS.put("UT", 0);
+        ZONE_OFFSETS.put("UTC", 0);
+        ZONE_OFFSETS.put("Z", 0);
+        ZONE_OFFSETS.put("EST", (int) (-5 * HOUR));
+        ZONE_OFFSETS.put("EDT", (int) (-4 * HOUR));
+        ZONE_OFFSETS.put("CST", (int) (-6 * HOUR));
+        ZONE_OFFSETS.put("CDT", (int) (-5 * HOUR));
+        ZONE_OFFSETS.put("MST", (int) (-7 * HOUR));
+        ZONE_OFFSETS.put("MDT", (int) (-6 * HOUR));
+        ZONE_OFFSETS.put("PST", (int) (-8 * HOUR));
+        ZONE_OFFSETS.put("PDT", (int) (-7 * HOUR));
+    }
+
+    /** The string to parse */
+    private final String text;
+    /** The current position in the string */
+    private int position;
+
+    private DateParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parse a date string from a feed.
+     * 
+     * @param dateString The string to parse.
+     * @return The date or <code>null</code> if the string could not be parsed.
+     */
+    public static Date parseDate(String dateString) {
+        final long time = parse(dateString);
+
+        return time == INVALID ? null : new Date(time);
+    }
+
+    /**
+     * Parse a date string from a feed.
+     * 
+     * @param dateString The string to parse.
+     * @return The point in time in milliseconds since the epoch or
+     *         {@link #INVALID} if the string could not be parsed.
+     */
+    public static long parse(String dateString) {
+        return dateString == null ? INVALID : new DateParser(dateString).parse();
+    }
+
+    private long parse() {
+        skipWhitespace();
+
+        // ISO dates start with the year and a dash
+        final int digits = countDigits();
+        if ((digits == 4 || digits == 2) && charAt(position + digits) == '-')
+            return parseIso();
+        else
+            return parseRfc822();
+    }
+
+    private long parseRfc822() {
+        // The day of the week is optional and we do not need it
+        if (Character.isLetter(charAt(position))) {
+            skipLetters();
+            skip('.');
+            skip(',');
+            skipWhitespace();
+        }
+
+        final int day = readNumber(1, 2);
+        skipSeparators();
+        final int month = readMonth();
+        skipSeparators();
+        final int year = readYear();
+        skipWhitespace();
+
+        // The time is optional as well
+        int hour = 0, minute = 0, second = 0;
+        if (Character.isDigit(charAt(position))) {
+            hour = readNumber(1, 2);
+            minute = skip(':') ? readNumber(2, 2) : -1;
+            if (skip(':'))
+                second = readNumber(2, 2);
+            skipFraction();
+            skipWhitespace();
+        }
+
+        return toMillis(year, month, day, hour, minute, second, readZone());
+    }
+
+    private long parseIso() {
+        final int year = readYear();
+        final int month = skip('-') ? readNumber(1, 2) : -1;
+        final int day = skip('-') ? readNumber(1, 2) : -1;
+
+        // The time is optional
+        int hour = 0, minute = 0, second = 0;
+        if ((skip('T') || skip('t') || skip(' ')) && Character.isDigit(charAt(position))) {
+            hour = readNumber(2, 2);
+            minute = skip(':') ? readNumber(2, 2) : -1;
+            if (skip(':'))
+                second = readNumber(2, 2);
+            skipFraction();
+        }
+
+        skipWhitespace();
+        return toMillis(year, month, day, hour, minute, second, readZone());
+    }
+
+    private long toMillis(int year, int month, int day, int hour, int minute, int second,
+            int offset) {
+        // Check ranges, this also catches missing fields
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 24
+                || minute < 0 || minute > 59 || second < 0 || second > 60)
+            return INVALID;
+
+        final long local = daysSinceEpoch(year, month, day) * DAY + hour * HOUR + minute * MINUTE
+                + second * 1000L;
+
+        if (offset != NO_ZONE)
+            return local - offset;
+        else {
+            final TimeZone zone = TimeZone.getDefault();
+
+            return local - zone.getOffset(local - zone.getRawOffset());
+        }
+    }
+
+    /**
+     * @return The number of days between 1970-01-01 and the given date in the
+     *         proleptic Gregorian calendar. Days beyond the end of the month
+     *         roll over into the next month.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        // Count years from March, so the leap day is at the end of the year
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = (y >= 0 ? y : y - 399) / 400;
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private int readYear() {
+        final int start = position;
+        final int year = readNumber(2, 4);
+        final int digits = position - start;
+
+        if (digits == 4)
+            return year;
+        else if (digits == 2) {
+            // Two-digit years are put within 80 years before and 20 years
+            // after today, just as SimpleDateFormat does
+            int result = CURRENT_YEAR / 100 * 100 + year;
+            if (result > CURRENT_YEAR + 20)
+                result -= 100;
+            else if (result <= CURRENT_YEAR - 80)
+                result += 100;
+
+            return result;
+        } else
+            return -1;
+    }
+
+    private int readMonth() {
+        // Full month names are okay, we only look at the first three letters
+        final int start = position;
+        skipLetters();
+
+        if (position - start < 3)
+            return -1;
+
+        for (int month = 0; month < 12; month++)
+            if (text.regionMatches(true, start, MONTHS, month * 3, 3))
+                return month + 1;
+
+        return -1;
+    }
+
+    private int readZone() {
+        final char sign = charAt(position);
+
+        // Numeric offset like +0100 or -05:00
+        if (sign == '+' || sign == '-')
+            return readOffset();
+        // Named zone
+        else if (Character.isLetter(sign)) {
+            final int start = position;
+            skipLetters();
+
+            int offset = getZoneOffset(text.substring(start, position));
+            // Some feeds use "GMT+01:00" and alike
+            if (offset == 0 && (charAt(position) == '+' || charAt(position) == '-'))
+                offset = readOffset();
+
+            return offset;
+        } else
+            return NO_ZONE;
+    }
+
+    private int readOffset() {
+        final int sign = text.charAt(position++) == '-' ? -1 : 1;
+        final int digits = countDigits();
+
+        int hours, minutes = 0;
+        if (digits == 4) {
+            hours = readNumber(2, 2);
+            minutes = readNumber(2, 2);
+        } else {
+            hours = readNumber(1, 2);
+            if (skip(':'))
+                minutes = readNumber(2, 2);
+        }
+
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59)
+            return NO_ZONE;
+        else
+            return sign * (int) (hours * HOUR + minutes * MINUTE);
+    }
+
+    /**
+     * Find the offset of the given time zone name. Names not defined by RFC
+     * 822 are resolved the way {@link SimpleDateFormat} does it and cached.
+     * 
+     * @param name Zone name to look up.
+     * @return The offset in milliseconds or {@link #NO_ZONE}.
+     */
+    private static int getZoneOffset(String name) {
+        if (name.length() > MAX_ZONE_NAME_LENGTH)
+            return NO_ZONE;
+
+        final String key = name.toUpperCase(Locale.US);
+        Integer offset = ZONE_OFFSETS.get(key);
+
+        if (offset == null) {
+            // This is slow, but only happens once per zone name
+            final Date probe = new SimpleDateFormat(ZONE_PROBE_FORMAT, Locale.US)
+                    .parse(ZONE_PROBE + key, new ParsePosition(0));
+
+            offset = probe == null ? NO_ZONE :
+                    (int) (daysSinceEpoch(2000, 1, 1) * DAY - probe.getTime());
+            ZONE_OFFSETS.put(key, offset);
+        }
+
+        return offset;
+    }
+
+    /**
+     * Read a non-negative number at the current position.
+     * 
+     * @param minDigits The minimum number of digits expected.
+     * @param maxDigits The maximum number of digits read.
+     * @return The number or -1 if there are too few digits.
+     */
+    private int readNumber(int minDigits, int maxDigits) {
+        int result = 0;
+        int digits = 0;
+
+        while (digits < maxDigits && Character.isDigit(charAt(position))) {
+            result = result * 10 + Character.digit(text.charAt(position++), 10);
+            digits++;
+        }
+
+        return digits < minDigits ? -1 : result;
+    }
+
+    private int countDigits() {
+        int index = position;
+        while (Character.isDigit(charAt(index)))
+            index++;
+
+        return index - position;
+    }
+
+    private void skipFraction() {
+        if (skip('.') || skip(','))
+            while (Character.isDigit(charAt(position)))
+                position++;
+    }
+
+    private void skipLetters() {
+        while (Character.isLetter(charAt(position)))
+            position++;
+    }
+
+    private void skipWhitespace() {
+        while (Character.isWhitespace(charAt(position)))
+            position++;
+    }
+
+    private void skipSeparators() {
+        while (charAt(position) == '-' || Character.isWhitespace(charAt(position)))
+            position++;
+    }
+
+    private boolean skip(char expected) {
+        final boolean found = charAt(position) == expected;
+        if (found)
+            position++;
+
+        return found;
+    }
+
+    /**
+     * @return The char at the given index or zero if beyond the end.
+     */
+    private char charAt(int index) {
+        return index < text.length() ? text.charAt(index) : 0;
+    }
+}
@@ -26,8 +26,11 @@ import net.alliknow.podcatcher.model.tasks.StoreEpisodeMetadataTask;
 import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.EpisodeMetadata;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 
@@ -40,16 +43,28 @@ import java.util.concurrent.CountDownLatch;
 public abstract class EpisodeBaseManager implements OnLoadEpisodeMetadataListener,
         OnStoreEpisodeMetadataListener {
 
-    /** The file name to store local episode metadata information under */
+    /** The file name to store the local episode metadata snapshot under */
+    public static final String METADATA_SNAPSHOT_FILENAME = "episodes.dat";
+    /**
+     * The file name local episode metadata was stored under before the binary
+     * snapshot, this is migrated on load
+     */
     public static final String METADATA_FILENAME = "episodes.xml";
+    /** The file name of the journal holding the changes since the last save */
+    public static final String METADATA_JOURNAL_FILENAME = "episodes.journal";
 
     /** The application itself (used e.g. as context in tasks) */
     protected Podcatcher podcatcher;
 
     /** The metadata information held for episodes */
     protected Map<String, EpisodeMetadata> metadata;
-    /** Flag to indicate whether metadata is dirty */
-    protected boolean metadataChanged;
+    /** The keys of all dirty metadata records (might be changed off the main thread) */
+    private final Set<String> changedMetadataKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** The keys of the metadata records the store task is writing */
+    private Set<String> storingMetadataKeys;
+    /** Whether the last store failed, the journal might be broken then */
+    private boolean metadataStoreFailed = false;
 
     /** Amount of milliseconds between {@link #saveState()} calls */
     private long PERSIST_METADATA_INTERVAL = 60 * 1000;
@@ -93,7 +108,7 @@ public abstract class EpisodeBaseManager implements OnLoadEpisodeMetadataListene
         // We want our metadata to be thread safe, since we might load some
         // clean-up work off to other threads.
         this.metadata = new ConcurrentHashMap<>(metadata);
-        this.metadataChanged = false;
+        this.changedMetadataKeys.clear();
 
         // Here we need to release all threads (AsyncTasks) that might be
         // waiting for the episode metadata to become available
@@ -115,32 +130,72 @@ public abstract class EpisodeBaseManager implements OnLoadEpisodeMetadataListene
     /**
      * Persist the manager's data to disk. It is save to call this at any time,
      * if there is no change in the episode meta data, no action is taken.
+     * Only the records changed are written (see {@link StoreEpisodeMetadataTask}).
      */
     @SuppressWarnings("unchecked")
     public void saveState() {
         // Run store task if it is not running and meta data is dirty
-        if (metadataChanged && metadata != null && !isStoreTaskRunning) {
+        if (!changedMetadataKeys.isEmpty() && metadata != null && !isStoreTaskRunning) {
             // Make sure task does not run twice
             isStoreTaskRunning = true;
 
-            // Store a copy of the actual map, since there might come in changes
-            // to the meta data while the task is running and that would lead to
-            // a concurrent modification exception
-            new StoreEpisodeMetadataTask(podcatcher, this).execute(new HashMap<>(metadata));
+            // Take the keys, records changed while the task is running are
+            // marked dirty again and stored the next time
+            storingMetadataKeys = new HashSet<>(changedMetadataKeys);
+            changedMetadataKeys.removeAll(storingMetadataKeys);
 
-            // Reset the flag, so the list will only be saved if changed again.
-            metadataChanged = false;
+            final StoreEpisodeMetadataTask task =
+                    new StoreEpisodeMetadataTask(podcatcher, this, metadata);
+            // Do not append to a journal that might end in a broken record
+            task.setForceCompact(metadataStoreFailed);
+            task.execute(storingMetadataKeys);
         }
     }
 
     @Override
     public void onEpisodeMetadataStored() {
         isStoreTaskRunning = false;
+        storingMetadataKeys = null;
+        metadataStoreFailed = false;
     }
 
     @Override
     public void onEpisodeMetadataStoreFailed(Exception exception) {
         isStoreTaskRunning = false;
+
+        // Try again next time, writing all metadata
+        changedMetadataKeys.addAll(storingMetadataKeys);
+        storingMetadataKeys = null;
+        metadataStoreFailed = true;
+    }
+
+    /**
+     * Mark a metadata record as dirty, so it is stored on the next call of
+     * {@link #saveState()}. This is thread-safe.
+     * 
+     * @param key The key of the record changed (the episode's media URL).
+     */
+    protected void markMetadataChanged(String key) {
+        if (key != null)
+            changedMetadataKeys.add(key);
+    }
+
+    /**
+     * Update the podcast URL stored with the episode metadata after a podcast
+     * has moved to a new location. The metadata keys (the episodes' media URLs)
+     * are not changed.
+     * 
+     * @param oldUrl The podcast's former URL.
+     * @param newUrl The podcast's new URL.
+     */
+    public void updatePodcastUrl(String oldUrl, String newUrl) {
+        if (metadata != null && oldUrl != null)
+            for (Entry<String, EpisodeMetadata> entry : metadata.entrySet())
+                if (oldUrl.equals(entry.getValue().podcastUrl)) {
+                    entry.getValue().podcastUrl = newUrl;
+
+                    markMetadataChanged(entry.getKey());
+                }
     }
 
     /**
@@ -153,7 +208,7 @@ public abstract class EpisodeBaseManager implements OnLoadEpisodeMetadataListene
         // We need all there object to be present: episode, podcast and holder
         if (episode != null && meta != null && episode.getPodcast() != null) {
             meta.episodeName = episode.getName();
-            meta.episodePubDate = episode.getPubDate();
+            meta.episodePubDate = episode.getPubDateMillis();
             meta.episodeDescription = episode.getDescription();
             meta.podcastName = episode.getPodcast().getName();
             meta.podcastUrl = episode.getPodcast().getUrl();
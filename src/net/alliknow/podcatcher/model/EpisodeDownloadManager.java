@@ -109,7 +109,7 @@ public abstract class EpisodeDownloadManager extends EpisodeBaseManager implemen
             putAdditionalEpisodeInformation(episode, meta);
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
 
             // Start the actual download
             new DownloadEpisodeTask(podcatcher, this)
@@ -125,7 +125,7 @@ public abstract class EpisodeDownloadManager extends EpisodeBaseManager implemen
             meta.downloadId = id;
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
         }
     }
 
@@ -156,7 +156,7 @@ public abstract class EpisodeDownloadManager extends EpisodeBaseManager implemen
                 downloadsSize++;
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
         }
     }
 
@@ -172,7 +172,7 @@ public abstract class EpisodeDownloadManager extends EpisodeBaseManager implemen
                 listener.onDownloadFailed(episode, error);
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
         }
     }
 
@@ -218,7 +218,7 @@ public abstract class EpisodeDownloadManager extends EpisodeBaseManager implemen
                     listener.onDownloadDeleted(episode);
 
                 // Mark metadata record as dirty
-                metadataChanged = true;
+                markMetadataChanged(episode.getMediaUrl());
                 // Decrement counter
                 if (downloadsSize != -1)
                     downloadsSize--;
@@ -0,0 +1,131 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import net.alliknow.podcatcher.model.types.Episode;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Utility class to merge a number of ordered episode lists into one. This is
+ * used to show the episodes of many podcasts at once without having to put all
+ * of them into one sorted set.
+ */
+public class EpisodeListMerger {
+
+    /** A position in one of the lists merged */
+    private static class Cursor implements Comparable<Cursor> {
+
+        /** The list we walk */
+        private final List<Episode> list;
+        /** The index of the current episode */
+        private int index = 0;
+
+        private Cursor(List<Episode> list) {
+            this.list = list;
+        }
+
+        private Episode current() {
+            return list.get(index);
+        }
+
+        @Override
+        public int compareTo(Cursor another) {
+            return current().compareTo(another.current());
+        }
+    }
+
+    /**
+     * Get the given episode list ordered as defined by
+     * {@link Episode#compareTo(Episode)}. Most feeds list their episodes
+     * newest first, so these only need to be checked.
+     * 
+     * @param episodes The episodes to order.
+     * @return The list given if it is in order already, a sorted copy
+     *         otherwise. The list given is never altered.
+     */
+    public static List<Episode> sort(List<Episode> episodes) {
+        for (int index = 1; index < episodes.size(); index++)
+            if (episodes.get(index - 1).compareTo(episodes.get(index)) > 0) {
+                final List<Episode> sorted = new ArrayList<>(episodes);
+                Collections.sort(sorted);
+
+                return sorted;
+            }
+
+        return episodes;
+    }
+
+    /**
+     * Merge the given episode lists using a k-way merge. This runs in O(N log
+     * k) for N episodes in k lists, which is a lot cheaper than re-sorting all
+     * episodes whenever another list is added.
+     * 
+     * @param lists The episode lists to merge, each of them needs to be ordered
+     *            as defined by {@link Episode#compareTo(Episode)} (see
+     *            {@link #sort(List)}). Lists are not altered.
+     * @return A new list with all the episodes in order. The same episode
+     *         found in more than one list (i.e. an episode with the same
+     *         podcast and {@link Episode#getIdentity()}) is only included
+     *         once.
+     */
+    public static List<Episode> merge(Collection<List<Episode>> lists) {
+        final PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, lists.size()));
+
+        int count = 0;
+        for (List<Episode> list : lists)
+            if (!list.isEmpty()) {
+                cursors.add(new Cursor(list));
+                count += list.size();
+            }
+
+        final List<Episode> result = new ArrayList<>(count);
+        // The identities seen so far, per podcast since feeds might use the
+        // same GUIDs
+        final Map<Podcast, Set<String>> identities = new IdentityHashMap<>();
+        while (!cursors.isEmpty()) {
+            final Cursor cursor = cursors.poll();
+            final Episode episode = cursor.current();
+
+            Set<String> podcastIdentities = identities.get(episode.getPodcast());
+            if (podcastIdentities == null) {
+                podcastIdentities = new HashSet<>();
+                identities.put(episode.getPodcast(), podcastIdentities);
+            }
+
+            final String identity = episode.getIdentity();
+            if (identity == null || podcastIdentities.add(identity))
+                result.add(episode);
+
+            // Put the cursor back if there is more to come from its list
+            if (++cursor.index < cursor.list.size())
+                cursors.add(cursor);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,401 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import net.alliknow.podcatcher.model.types.EpisodeMetadata;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Reads and writes the compact binary snapshot of the episode metadata. Like
+ * the podcast snapshots, the file starts with a magic number and a format
+ * version. It then holds the id of the journal belonging to it, a table of the
+ * podcast names and URLs (these repeat for all episodes of a podcast) and the
+ * records. Each record starts with its key and a set of flags telling which
+ * fields follow. Numbers are written as variable length integers, strings as
+ * their UTF-8 bytes prefixed by their length.
+ * <p>
+ * The snapshot is read from a memory-mapped file, so loading it is mostly
+ * creating the records and their strings.
+ * </p>
+ * 
+ * @see PodcastSnapshotStore
+ */
+public class EpisodeMetadataSnapshot {
+
+    /** The magic number the snapshot file starts with */
+    private static final int SNAPSHOT_MAGIC = 0x5043454d;
+    /** The current snapshot format version */
+    private static final int SNAPSHOT_VERSION = 1;
+    /** The character set used for all strings */
+    private static final Charset SNAPSHOT_CHARSET = Charset.forName("UTF-8");
+
+    /** The record flags, telling which fields are present */
+    private static final int HAS_DOWNLOAD_ID = 1;
+    private static final int HAS_FILE_PATH = 1 << 1;
+    private static final int HAS_RESUME_AT = 1 << 2;
+    private static final int IS_OLD = 1 << 3;
+    private static final int IS_NEW = 1 << 4;
+    private static final int HAS_PLAYLIST_POSITION = 1 << 5;
+    private static final int HAS_PODCAST_NAME = 1 << 6;
+    private static final int HAS_PODCAST_URL = 1 << 7;
+    private static final int HAS_EPISODE_NAME = 1 << 8;
+    private static final int HAS_EPISODE_PUB_DATE = 1 << 9;
+    private static final int HAS_EPISODE_DESCRIPTION = 1 << 10;
+
+    /**
+     * Write the metadata records with data to the snapshot format. The map
+     * is iterated only once and each record field is read only once, so the
+     * snapshot written is always well-formed and readable. It is not a
+     * point-in-time copy though: Neither the map nor the records are copied,
+     * so records added, removed or changed while this runs might be written
+     * in their former or their new state, or half-way in between. Callers
+     * need to make sure such changes are stored again later, e.g. via the
+     * journal.
+     * 
+     * @param stream The stream to write to, this should be buffered and is not
+     *            closed here.
+     * @param metadata The metadata records to write.
+     * @param journalId The id of the journal that belongs to the snapshot.
+     * @throws IOException If writing fails.
+     */
+    public static void write(OutputStream stream, Map<String, EpisodeMetadata> metadata,
+            String journalId) throws IOException {
+        final DataOutputStream out = new DataOutputStream(stream);
+
+        // 1. Find the records to write and build the string table, we need to
+        // remember the indices since the records might change meanwhile
+        final List<String> keys = new ArrayList<>();
+        final List<EpisodeMetadata> records = new ArrayList<>();
+        final List<String> table = new ArrayList<>();
+        final Map<String, Integer> tableIndices = new HashMap<>();
+        int[] nameIndices = new int[metadata.size()];
+        int[] urlIndices = new int[metadata.size()];
+
+        for (Entry<String, EpisodeMetadata> entry : metadata.entrySet())
+            if (entry.getValue().hasData()) {
+                // The map is concurrent and might have grown
+                if (records.size() == nameIndices.length) {
+                    final int length = nameIndices.length * 2 + 1;
+                    nameIndices = copyOf(nameIndices, length);
+                    urlIndices = copyOf(urlIndices, length);
+                }
+
+                nameIndices[records.size()] = indexOf(entry.getValue().podcastName,
+                        table, tableIndices);
+                urlIndices[records.size()] = indexOf(entry.getValue().podcastUrl,
+                        table, tableIndices);
+                keys.add(entry.getKey());
+                records.add(entry.getValue());
+            }
+
+        // 2. Write the header and the string table
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        writeString(out, journalId);
+        writeVarLong(out, table.size());
+        for (String string : table)
+            writeString(out, string);
+
+        // 3. Write the records
+        writeVarLong(out, records.size());
+        for (int index = 0; index < records.size(); index++) {
+            final EpisodeMetadata record = records.get(index);
+            // Read the fields only once, they might be changed meanwhile
+            final Long downloadId = record.downloadId;
+            final String filePath = record.filePath;
+            final Integer resumeAt = record.resumeAt;
+            final Boolean isOld = record.isOld;
+            final Integer playlistPosition = record.playlistPosition;
+            final String episodeName = record.episodeName;
+            final long episodePubDate = record.episodePubDate;
+            final String episodeDescription = record.episodeDescription;
+
+            int flags = 0;
+            if (downloadId != null)
+                flags |= HAS_DOWNLOAD_ID;
+            if (filePath != null)
+                flags |= HAS_FILE_PATH;
+            if (resumeAt != null)
+                flags |= HAS_RESUME_AT;
+            if (isOld != null)
+                flags |= isOld ? IS_OLD : IS_NEW;
+            if (playlistPosition != null)
+                flags |= HAS_PLAYLIST_POSITION;
+            if (nameIndices[index] >= 0)
+                flags |= HAS_PODCAST_NAME;
+            if (urlIndices[index] >= 0)
+                flags |= HAS_PODCAST_URL;
+            if (episodeName != null)
+                flags |= HAS_EPISODE_NAME;
+            if (episodePubDate != DateParser.INVALID)
+                flags |= HAS_EPISODE_PUB_DATE;
+            if (episodeDescription != null)
+                flags |= HAS_EPISODE_DESCRIPTION;
+
+            writeString(out, keys.get(index));
+            writeVarLong(out, flags);
+            if (downloadId != null)
+                writeVarLong(out, zigZag(downloadId));
+            if (filePath != null)
+                writeString(out, filePath);
+            if (resumeAt != null)
+                writeVarLong(out, zigZag(resumeAt));
+            if (playlistPosition != null)
+                writeVarLong(out, zigZag(playlistPosition));
+            if (nameIndices[index] >= 0)
+                writeVarLong(out, nameIndices[index]);
+            if (urlIndices[index] >= 0)
+                writeVarLong(out, urlIndices[index]);
+            if (episodeName != null)
+                writeString(out, episodeName);
+            if (episodePubDate != DateParser.INVALID)
+                writeVarLong(out, zigZag(episodePubDate));
+            if (episodeDescription != null)
+                writeString(out, episodeDescription);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Read the metadata records from a snapshot file.
+     * 
+     * @param file The snapshot file to read.
+     * @param result The map to put the records into.
+     * @return The id of the journal that belongs to the snapshot.
+     * @throws IOException If the file cannot be read, is corrupt or in an
+     *             unknown format version. Some records might have been put
+     *             into the result map in this case.
+     */
+    public static String read(File file, Map<String, EpisodeMetadata> result)
+            throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+
+        try {
+            final FileChannel channel = in.getChannel();
+
+            // The mapping stays valid after the channel is closed
+            return read(channel.map(MapMode.READ_ONLY, 0, channel.size()), result);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read the metadata records from a snapshot.
+     * 
+     * @param buffer The snapshot's content.
+     * @param result The map to put the records into.
+     * @return The id of the journal that belongs to the snapshot.
+     * @throws IOException If the snapshot is corrupt or in an unknown format
+     *             version. Some records might have been put into the result
+     *             map in this case.
+     */
+    public static String read(ByteBuffer buffer, Map<String, EpisodeMetadata> result)
+            throws IOException {
+        final Reader in = new Reader(buffer);
+
+        try {
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION)
+                throw new IOException("Unknown episode metadata snapshot format");
+
+            final String journalId = in.readString();
+            final String[] table = new String[in.readCount()];
+            for (int index = 0; index < table.length; index++)
+                table[index] = in.readString();
+
+            final int count = in.readCount();
+            for (int index = 0; index < count; index++) {
+                final String key = in.readString();
+                final int flags = (int) in.readVarLong();
+                final EpisodeMetadata record = new EpisodeMetadata();
+
+                if ((flags & HAS_DOWNLOAD_ID) != 0)
+                    record.downloadId = unZigZag(in.readVarLong());
+                if ((flags & HAS_FILE_PATH) != 0)
+                    record.filePath = in.readString();
+                if ((flags & HAS_RESUME_AT) != 0)
+                    record.resumeAt = (int) unZigZag(in.readVarLong());
+                if ((flags & (IS_OLD | IS_NEW)) != 0)
+                    record.isOld = (flags & IS_OLD) != 0;
+                if ((flags & HAS_PLAYLIST_POSITION) != 0)
+                    record.playlistPosition = (int) unZigZag(in.readVarLong());
+                if ((flags & HAS_PODCAST_NAME) != 0)
+                    record.podcastName = table[in.readIndex(table.length)];
+                if ((flags & HAS_PODCAST_URL) != 0)
+                    record.podcastUrl = table[in.readIndex(table.length)];
+                if ((flags & HAS_EPISODE_NAME) != 0)
+                    record.episodeName = in.readString();
+                if ((flags & HAS_EPISODE_PUB_DATE) != 0)
+                    record.episodePubDate = unZigZag(in.readVarLong());
+                if ((flags & HAS_EPISODE_DESCRIPTION) != 0)
+                    record.episodeDescription = in.readString();
+
+                if (key == null)
+                    throw new IOException("Episode metadata record without key");
+                result.put(key, record);
+            }
+
+            return journalId;
+        } catch (BufferUnderflowException bue) {
+            throw new IOException("Episode metadata snapshot is truncated");
+        }
+    }
+
+    private static int indexOf(String string, List<String> table,
+            Map<String, Integer> tableIndices) {
+        if (string == null)
+            return -1;
+
+        Integer index = tableIndices.get(string);
+        if (index == null) {
+            index = table.size();
+
+            table.add(string);
+            tableIndices.put(string, index);
+        }
+
+        return index;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        final int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+
+        return result;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        // The length is written shifted by one, zero means null
+        if (string == null)
+            writeVarLong(out, 0);
+        else {
+            final byte[] bytes = string.getBytes(SNAPSHOT_CHARSET);
+
+            writeVarLong(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        // Seven bits per byte, the high bit tells whether more bytes follow
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(long value) {
+        // Map small negative values to small positive ones
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Decodes the snapshot's varints and strings from the buffer, re-using a
+     * byte array if the buffer is not backed by one (e.g. a mapped file).
+     */
+    private static class Reader {
+
+        /** The buffer to read from */
+        private final ByteBuffer buffer;
+        /** The array to copy string bytes to */
+        private byte[] bytes = new byte[256];
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private long readVarLong() throws IOException {
+            long result = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = buffer.get();
+                result |= (long) (b & 0x7f) << shift;
+
+                if ((b & 0x80) == 0)
+                    return result;
+            }
+
+            throw new IOException("Malformed number in episode metadata snapshot");
+        }
+
+        private int readCount() throws IOException {
+            final long count = readVarLong();
+
+            // Every entry takes at least one byte
+            if (count < 0 || count > buffer.remaining())
+                throw new IOException("Invalid count in episode metadata snapshot");
+
+            return (int) count;
+        }
+
+        private int readIndex(int size) throws IOException {
+            final long index = readVarLong();
+
+            if (index < 0 || index >= size)
+                throw new IOException("Invalid index in episode metadata snapshot");
+
+            return (int) index;
+        }
+
+        private String readString() throws IOException {
+            // The length is shifted by one, zero means null
+            final long length = readVarLong() - 1;
+
+            if (length == -1)
+                return null;
+            else if (length < 0 || length > buffer.remaining())
+                throw new IOException("Invalid string in episode metadata snapshot");
+
+            final int size = (int) length;
+            if (buffer.hasArray()) {
+                final int offset = buffer.arrayOffset() + buffer.position();
+                buffer.position(buffer.position() + size);
+
+                return new String(buffer.array(), offset, size, SNAPSHOT_CHARSET);
+            } else {
+                if (bytes.length < size)
+                    bytes = new byte[Math.max(size, bytes.length * 2)];
+                buffer.get(bytes, 0, size);
+
+                return new String(bytes, 0, size, SNAPSHOT_CHARSET);
+            }
+        }
+    }
+}
@@ -226,10 +226,13 @@ public abstract class EpisodePlaylistManager extends EpisodeDownloadManager {
 
                 // Increment all other positions if needed
                 if (position < getPlaylistSize())
-                    for (EpisodeMetadata otherMeta : metadata.values())
-                        if (otherMeta.playlistPosition != null
-                                && otherMeta.playlistPosition >= position)
-                            otherMeta.playlistPosition++;
+                    for (Entry<String, EpisodeMetadata> other : metadata.entrySet())
+                        if (other.getValue().playlistPosition != null
+                                && other.getValue().playlistPosition >= position) {
+                            other.getValue().playlistPosition++;
+
+                            markMetadataChanged(other.getKey());
+                        }
 
                 // Put metadata information
                 meta.playlistPosition = position < getPlaylistSize() ? position : getPlaylistSize();
@@ -244,7 +247,7 @@ public abstract class EpisodePlaylistManager extends EpisodeDownloadManager {
                     listener.onPlaylistChanged();
 
                 // Mark metadata record as dirty
-                metadataChanged = true;
+                markMetadataChanged(episode.getMediaUrl());
             }
         }
     }
@@ -263,12 +266,15 @@ public abstract class EpisodePlaylistManager extends EpisodeDownloadManager {
                 // we are removing
                 Iterator<Entry<String, EpisodeMetadata>> iterator = metadata.entrySet().iterator();
                 while (iterator.hasNext()) {
-                    EpisodeMetadata other = iterator.next().getValue();
+                    Entry<String, EpisodeMetadata> other = iterator.next();
 
                     // Find records for playlist entries
-                    if (other.playlistPosition != null
-                            && other.playlistPosition > meta.playlistPosition)
-                        other.playlistPosition--;
+                    if (other.getValue().playlistPosition != null
+                            && other.getValue().playlistPosition > meta.playlistPosition) {
+                        other.getValue().playlistPosition--;
+
+                        markMetadataChanged(other.getKey());
+                    }
                 }
 
                 // Reset the playlist position for given episode
@@ -283,7 +289,7 @@ public abstract class EpisodePlaylistManager extends EpisodeDownloadManager {
                     listener.onPlaylistChanged();
 
                 // Mark metadata record as dirty
-                metadataChanged = true;
+                markMetadataChanged(episode.getMediaUrl());
             }
         }
     }
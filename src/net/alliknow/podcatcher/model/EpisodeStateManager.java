@@ -31,8 +31,10 @@ import net.alliknow.podcatcher.model.types.EpisodeMetadata;
 import net.alliknow.podcatcher.model.types.Podcast;
 import net.alliknow.podcatcher.model.types.Progress;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -54,6 +56,51 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     /** Helper to prevent clean-up to run twice for the same podcast */
     private Set<String> podcastsCleanUpRanFor = new HashSet<>();
 
+    /** The new episode counters by podcast URL, also used as their lock */
+    private Map<String, NewEpisodeCounter> newEpisodeCounters = new HashMap<>();
+    /** The sum of all new episode counters */
+    private int newEpisodeTotal = 0;
+
+    /**
+     * The number of episodes not marked old in one of the podcast's episode
+     * lists. Podcasts replace their list on load, so the counter is only valid
+     * as long as the list is the podcast's current one.
+     */
+    private static class NewEpisodeCounter {
+
+        /** The episode list counted */
+        private final List<Episode> episodes;
+        /** The number of episodes in the list not marked old */
+        private int count;
+        /**
+         * How often each media URL occurs in the list, only built once an
+         * episode's state changes
+         */
+        private Map<String, Integer> mediaUrls;
+
+        private NewEpisodeCounter(List<Episode> episodes, int count) {
+            this.episodes = episodes;
+            this.count = count;
+        }
+
+        /**
+         * @return The number of episodes in the list with the given media URL.
+         */
+        private int occurrences(String mediaUrl) {
+            if (mediaUrls == null) {
+                mediaUrls = new HashMap<>();
+
+                for (Episode episode : episodes) {
+                    final Integer former = mediaUrls.get(episode.getMediaUrl());
+                    mediaUrls.put(episode.getMediaUrl(), former == null ? 1 : former + 1);
+                }
+            }
+
+            final Integer result = mediaUrls.get(mediaUrl);
+            return result == null ? 0 : result;
+        }
+    }
+
     /**
      * Init the episode state manager.
      * 
@@ -67,6 +114,17 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     public void onEpisodeMetadataLoaded(Map<String, EpisodeMetadata> metadata) {
         super.onEpisodeMetadataLoaded(metadata);
 
+        // Podcasts loaded so far need to be counted again
+        synchronized (newEpisodeCounters) {
+            newEpisodeCounters.clear();
+            newEpisodeTotal = 0;
+
+            final List<Podcast> podcasts = PodcastManager.getInstance().getPodcastList();
+            if (podcasts != null)
+                for (Podcast podcast : podcasts)
+                    updateNewEpisodeCounter(podcast);
+        }
+
         // We register to be alerted on podcast loads and podcast list changes
         // so we can perform some clean-ups
         PodcastManager.getInstance().addLoadPodcastListener(this);
@@ -83,6 +141,7 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
      */
     public void setState(Episode episode, Boolean isOld) {
         if (episode != null && episode.getMediaUrl() != null && metadata != null) {
+            final boolean wasOld = getState(episode);
             EpisodeMetadata meta = metadata.get(episode.getMediaUrl());
 
             // Metadata not yet created
@@ -104,7 +163,10 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
                 meta.podcastUrl = episode.getPodcast().getUrl();
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
+            // Keep the new episode count up to date
+            if (wasOld != getState(episode) && episode.getPodcast() != null)
+                countStateChange(episode, wasOld ? 1 : -1);
 
             // Alert listeners
             for (OnChangeEpisodeStateListener listener : stateListeners)
@@ -131,18 +193,95 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     }
 
     /**
-     * Count the number of episodes not marked old for given podcast.
+     * Get the number of episodes not marked old for given podcast. For
+     * podcasts in the podcast manager's list, this is counted once per load
+     * and updated on state changes.
      * 
      * @param podcast Podcast to count for.
      * @return The number of new episode in the podcast.
      */
     public int getNewEpisodeCount(Podcast podcast) {
+        if (podcast == null)
+            return 0;
+        else if (!PodcastManager.getInstance().contains(podcast))
+            return countNewEpisodes(podcast.getEpisodes());
+        else
+            synchronized (newEpisodeCounters) {
+                final NewEpisodeCounter counter = newEpisodeCounters.get(podcast.getUrl());
+
+                // The podcast might have been re-loaded since counted
+                if (counter != null && counter.episodes == podcast.getEpisodes())
+                    return counter.count;
+                else
+                    return updateNewEpisodeCounter(podcast);
+            }
+    }
+
+    /**
+     * @return The number of episodes not marked old in all the podcasts
+     *         counted by {@link #getNewEpisodeCount(Podcast)}, i.e. all
+     *         podcasts in the podcast manager's list loaded so far.
+     */
+    public int getNewEpisodeCount() {
+        synchronized (newEpisodeCounters) {
+            return newEpisodeTotal;
+        }
+    }
+
+    /**
+     * Count the podcast's current episode list and put the result in place.
+     * Only call this while holding the counters' lock.
+     * 
+     * @return The podcast's new episode count.
+     */
+    private int updateNewEpisodeCounter(Podcast podcast) {
+        final List<Episode> episodes = podcast.getEpisodes();
+        final NewEpisodeCounter counter =
+                new NewEpisodeCounter(episodes, countNewEpisodes(episodes));
+
+        final NewEpisodeCounter former = newEpisodeCounters.put(podcast.getUrl(), counter);
+        newEpisodeTotal += counter.count - (former == null ? 0 : former.count);
+
+        return counter.count;
+    }
+
+    private void removeNewEpisodeCounter(String podcastUrl) {
+        synchronized (newEpisodeCounters) {
+            final NewEpisodeCounter former = newEpisodeCounters.remove(podcastUrl);
+
+            if (former != null)
+                newEpisodeTotal -= former.count;
+        }
+    }
+
+    /**
+     * Update the new episode count of the episode's podcast after its state
+     * changed.
+     * 
+     * @param episode The episode changed.
+     * @param delta The change per episode, +1 if it is now new, -1 if old.
+     */
+    private void countStateChange(Episode episode, int delta) {
+        synchronized (newEpisodeCounters) {
+            final NewEpisodeCounter counter =
+                    newEpisodeCounters.get(episode.getPodcast().getUrl());
+
+            // All episodes with the same media URL share their state
+            if (counter != null) {
+                final int change = delta * counter.occurrences(episode.getMediaUrl());
+
+                counter.count += change;
+                newEpisodeTotal += change;
+            }
+        }
+    }
+
+    private int countNewEpisodes(List<Episode> episodes) {
         int count = 0;
 
-        if (podcast != null)
-            for (Episode episode : podcast.getEpisodes())
-                if (!getState(episode))
-                    count++;
+        for (Episode episode : episodes)
+            if (!getState(episode))
+                count++;
 
         return count;
     }
@@ -196,7 +335,7 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
                 meta.podcastUrl = episode.getPodcast().getUrl();
 
             // Mark metadata record as dirty
-            metadataChanged = true;
+            markMetadataChanged(episode.getMediaUrl());
 
             // Alert listeners
             for (OnChangeEpisodeStateListener listener : stateListeners)
@@ -225,9 +364,19 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
         // pass
     }
 
+    @Override
+    public void updatePodcastUrl(String oldUrl, String newUrl) {
+        super.updatePodcastUrl(oldUrl, newUrl);
+
+        // The counter is found by the podcast's URL
+        removeNewEpisodeCounter(oldUrl);
+    }
+
     @Override
     public void onPodcastRemoved(final Podcast podcast) {
         if (podcast != null) {
+            removeNewEpisodeCounter(podcast.getUrl());
+
             // Go off the main thread, we rely on getting an iterator from the
             // metadata being thread safe here!
             new Thread() {
@@ -250,6 +399,8 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
                             // the metadata will clean empty records
                             entry.getValue().isOld = null;
                             entry.getValue().resumeAt = null;
+
+                            markMetadataChanged(entry.getKey());
                         }
                     }
                 }
@@ -259,6 +410,12 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
 
     @Override
     public void onPodcastLoaded(final Podcast podcast) {
+        // Count the new episode list
+        if (podcast != null && PodcastManager.getInstance().contains(podcast))
+            synchronized (newEpisodeCounters) {
+                updateNewEpisodeCounter(podcast);
+            }
+
         // We do not want to run this too frequently and for all podcasts at
         // once. In addition it should run only once per podcast during the
         // lifetime of this EpisodeManager
@@ -301,6 +458,8 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
                                 // storing the metadata will clean empty records
                                 entry.getValue().isOld = null;
                                 entry.getValue().resumeAt = null;
+
+                                markMetadataChanged(entry.getKey());
                             }
                         }
                     }
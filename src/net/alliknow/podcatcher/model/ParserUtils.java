@@ -21,14 +21,25 @@ import android.annotation.SuppressLint;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 
 /**
  * Utility class to support podcast XML/RSS parsing.
  */
 public class ParserUtils {
 
+    /** The factory creating our parsers, only looked up once */
+    private static XmlPullParserFactory parserFactory;
+    /** The namespace aware parsers, one per thread */
+    private static final ThreadLocal<XmlPullParser> namespaceAwareParsers =
+            new ThreadLocal<XmlPullParser>();
+    /** The parsers ignoring namespaces, one per thread */
+    private static final ThreadLocal<XmlPullParser> plainParsers =
+            new ThreadLocal<XmlPullParser>();
+
     /** A short time span format (no hours) */
     private static final String SHORT_DURATION = "%2$d:%3$02d";
     /** A long time span format (with hours) */
@@ -48,6 +59,61 @@ public class ParserUtils {
                 hours, (time / 60) - 60 * hours, time % 60);
     }
 
+    /**
+     * Get a parser for the calling thread. Parsers are created once per thread
+     * and then reused, since looking up the factory and creating the parser
+     * is expensive. Make sure to call
+     * {@link XmlPullParser#setInput(java.io.InputStream, String)} on the
+     * parser returned (this resets its state) and to call
+     * {@link #releaseParser(XmlPullParser)} when done. Do not use the parser
+     * once you call this method again on the same thread.
+     * 
+     * @param namespaceAware Whether the parser should process namespaces.
+     * @return The parser to use.
+     * @throws XmlPullParserException If the parser cannot be created.
+     */
+    public static XmlPullParser getParser(boolean namespaceAware) throws XmlPullParserException {
+        final ThreadLocal<XmlPullParser> parsers =
+                namespaceAware ? namespaceAwareParsers : plainParsers;
+        XmlPullParser parser = parsers.get();
+
+        if (parser == null) {
+            parser = createParser(namespaceAware);
+            parsers.set(parser);
+        }
+
+        return parser;
+    }
+
+    /**
+     * Drop the input of a parser returned by {@link #getParser(boolean)}. The
+     * parser stays with its thread and would otherwise keep the input alive.
+     * 
+     * @param parser The parser to release.
+     */
+    public static void releaseParser(XmlPullParser parser) {
+        try {
+            parser.setInput((Reader) null);
+        } catch (XmlPullParserException e) {
+            // Do not reuse the parser then
+            if (namespaceAwareParsers.get() == parser)
+                namespaceAwareParsers.remove();
+            if (plainParsers.get() == parser)
+                plainParsers.remove();
+        }
+    }
+
+    private static synchronized XmlPullParser createParser(boolean namespaceAware)
+            throws XmlPullParserException {
+        if (parserFactory == null)
+            parserFactory = XmlPullParserFactory.newInstance();
+
+        final XmlPullParser parser = parserFactory.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, namespaceAware);
+
+        return parser;
+    }
+
     /**
      * Skip the entire sub tree the given parser is currently pointing at.
      * 
@@ -60,16 +126,17 @@ public class ParserUtils {
         // have will be skipped.
         parser.require(XmlPullParser.START_TAG, null, null);
 
-        int level = 1;
-        // Continue parsing and increase/decrease the level
-        while (level > 0) {
-            int eventType = parser.next();
-            if (eventType == XmlPullParser.END_TAG) {
-                --level;
-            } else if (eventType == XmlPullParser.START_TAG) {
-                ++level;
-            }
-        }
+        // The parser keeps track of the level for us, so all we need to look
+        // at is the type of each event. We never ask for the text of the
+        // events skipped, so the parser does not need to create it.
+        final int depth = parser.getDepth();
+        int eventType;
+        do {
+            eventType = parser.next();
+
+            if (eventType == XmlPullParser.END_DOCUMENT)
+                throw new XmlPullParserException("Unexpected end of document", parser, null);
+        } while (eventType != XmlPullParser.END_TAG || parser.getDepth() > depth);
 
         // We are back to the original level, behind the start tag given and any
         // sub-tree that might have been there. Return.
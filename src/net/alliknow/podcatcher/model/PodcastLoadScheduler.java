@@ -0,0 +1,308 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ * 
+ * This file is part of PodCatcher Deluxe.
+ * 
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import android.net.Uri;
+import android.os.Process;
+
+import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastTask;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link LoadPodcastTask}s started by the {@link PodcastManager}.
+ * Instead of putting all loads on the shared {@link android.os.AsyncTask}
+ * thread pool, the scheduler uses its own, bounded set of workers. Loads
+ * waiting for a worker are queued in priority lanes (see {@link Priority}) and
+ * there is a limit on the number of concurrent loads per host, so a refresh of
+ * many feeds on the same server does not block everything else.
+ * <p>
+ * Each load runs in two stages: Downloading the feed is bound by network
+ * latency, so there are more download slots than cores. Parsing is bound by
+ * the CPU, so the number of concurrent parses is the number of cores. The task
+ * parses the feed straight from the remote stream, it enters the parse stage
+ * (see {@link LoadPodcastTask.ParseStage}) once the server responded and takes
+ * a parser then. Whenever the parser runs out of buffered data and has to wait
+ * for the network, the load gives the parser to the next one waiting and takes
+ * it back once the data arrived. The download slot goes to the next load
+ * waiting as soon as the whole feed is read.
+ * </p>
+ */
+public class PodcastLoadScheduler {
+
+    /** The number of concurrent downloads */
+    private static final int DOWNLOAD_COUNT = 6;
+    /** The maximum number of concurrent loads from the same host */
+    private static final int MAX_LOADS_PER_HOST = 2;
+    /** The number of concurrent parses */
+    private static final int PARSER_COUNT = Math.max(1, Runtime.getRuntime()
+            .availableProcessors());
+
+    /**
+     * The priority lanes available. Loads in a higher lane will always be
+     * started before those in lower lanes.
+     */
+    public static enum Priority {
+        /**
+         * The podcast is the one currently selected by the user.
+         */
+        SELECTED,
+
+        /**
+         * The load was triggered by the user, e.g. via selecting all podcasts.
+         */
+        USER,
+
+        /**
+         * The load is a background refresh.
+         */
+        BACKGROUND
+    }
+
+    /** The load jobs waiting for a worker, per lane */
+    private final Map<Priority, LinkedList<LoadJob>> lanes = new EnumMap<>(Priority.class);
+    /** The number of loads currently running per host */
+    private final Map<String, Integer> loadsPerHost = new HashMap<>();
+    /** The number of loads currently downloading */
+    private int runningCount = 0;
+
+    /** The parsers available */
+    private final Semaphore parsers = new Semaphore(PARSER_COUNT, true);
+
+    /**
+     * The worker threads, there is no fixed limit here because the number of
+     * loads in each stage is limited
+     */
+    private final ExecutorService workers = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "PodcastLoad #" + count.getAndIncrement());
+                }
+            });
+
+    /**
+     * A single podcast load. Works as the executor given to the load task and
+     * holds the runnable the task posts until a worker becomes available. Also
+     * hands out the parser and the download slot as the task moves through the
+     * parse stage. All stage calls come from the worker thread running the
+     * job.
+     */
+    private class LoadJob implements Executor, Runnable, LoadPodcastTask.ParseStage {
+
+        /** The podcast to load */
+        private final Podcast podcast;
+        /** The host we load from */
+        private final String host;
+        /** The runnable provided by the task */
+        private Runnable runnable;
+        /** Whether the load has given up its download slot */
+        private boolean downloadCompleted = false;
+        /** Whether the load is in the parse stage */
+        private boolean entered = false;
+        /** Whether the load holds a parser */
+        private boolean parsing = false;
+
+        private LoadJob(Podcast podcast) {
+            this.podcast = podcast;
+
+            final String host = podcast.getUrl() == null ? null : Uri.parse(podcast.getUrl())
+                    .getHost();
+            this.host = host == null ? "" : host;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            this.runnable = command;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            try {
+                runnable.run();
+            } finally {
+                leave();
+                onDownloadCompleted();
+            }
+        }
+
+        @Override
+        public void enter() throws InterruptedException {
+            entered = true;
+
+            resume();
+        }
+
+        @Override
+        public void pause() {
+            if (parsing) {
+                parsing = false;
+
+                parsers.release();
+            }
+        }
+
+        @Override
+        public void resume() throws InterruptedException {
+            if (entered && !parsing) {
+                parsers.acquire();
+                parsing = true;
+            }
+        }
+
+        @Override
+        public void onDownloadCompleted() {
+            if (!downloadCompleted) {
+                downloadCompleted = true;
+
+                PodcastLoadScheduler.this.onDownloadCompleted(this);
+            }
+        }
+
+        @Override
+        public void leave() {
+            entered = false;
+
+            pause();
+        }
+    }
+
+    /**
+     * Create a new scheduler.
+     */
+    public PodcastLoadScheduler() {
+        for (Priority priority : Priority.values())
+            lanes.put(priority, new LinkedList<LoadJob>());
+    }
+
+    /**
+     * Queue the given task to load the podcast. It will be run as soon as a
+     * download slot is available, all loads with higher priority are started
+     * and the podcast's host is below its concurrent load limit.
+     * 
+     * @param task The task to run.
+     * @param podcast The podcast to load.
+     * @param priority The lane to put the load in.
+     */
+    public void execute(LoadPodcastTask task, Podcast podcast, Priority priority) {
+        final LoadJob job = new LoadJob(podcast);
+        task.setParseStage(job);
+        // This only makes the task hand its runnable to the job
+        task.executeOnExecutor(job, podcast);
+
+        synchronized (this) {
+            lanes.get(priority).add(job);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Move a load already waiting for a worker to the given lane. This has no
+     * effect if the podcast load is not waiting or already in the given or a
+     * higher lane.
+     * 
+     * @param podcast The podcast to find the waiting load for.
+     * @param priority The lane to move the load to.
+     */
+    public synchronized void promote(Podcast podcast, Priority priority) {
+        for (Priority lower : Priority.values())
+            if (lower.compareTo(priority) > 0) {
+                final Iterator<LoadJob> jobs = lanes.get(lower).iterator();
+
+                while (jobs.hasNext()) {
+                    final LoadJob job = jobs.next();
+
+                    if (job.podcast.equals(podcast)) {
+                        jobs.remove();
+                        // Put it in front of the lane, the user is waiting
+                        lanes.get(priority).addFirst(job);
+
+                        return;
+                    }
+                }
+            }
+    }
+
+    private void onDownloadCompleted(LoadJob job) {
+        synchronized (this) {
+            runningCount--;
+
+            final int hostCount = loadsPerHost.get(job.host);
+            if (hostCount <= 1)
+                loadsPerHost.remove(job.host);
+            else
+                loadsPerHost.put(job.host, hostCount - 1);
+        }
+
+        dispatch();
+    }
+
+    private void dispatch() {
+        LoadJob next;
+
+        while ((next = pollNextJob()) != null)
+            workers.execute(next);
+    }
+
+    /**
+     * Find the next job to run, if any, and mark it as running.
+     * 
+     * @return The job to hand to a worker or <code>null</code> if there is no
+     *         job or no worker available.
+     */
+    private synchronized LoadJob pollNextJob() {
+        if (runningCount < DOWNLOAD_COUNT)
+            // Lanes are iterated in the order of the priority enum
+            for (LinkedList<LoadJob> lane : lanes.values()) {
+                final Iterator<LoadJob> jobs = lane.iterator();
+
+                while (jobs.hasNext()) {
+                    final LoadJob job = jobs.next();
+                    final Integer hostCount = loadsPerHost.get(job.host);
+
+                    if (hostCount == null || hostCount < MAX_LOADS_PER_HOST) {
+                        jobs.remove();
+
+                        runningCount++;
+                        loadsPerHost.put(job.host, hostCount == null ? 1 : hostCount + 1);
+
+                        return job;
+                    }
+                }
+            }
+
+        return null;
+    }
+}
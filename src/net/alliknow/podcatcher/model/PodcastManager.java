@@ -23,6 +23,7 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.UserManager;
 import android.preference.PreferenceManager;
 
@@ -33,6 +34,9 @@ import net.alliknow.podcatcher.listeners.OnChangePodcastListListener;
 import net.alliknow.podcatcher.listeners.OnLoadPodcastListListener;
 import net.alliknow.podcatcher.listeners.OnLoadPodcastListener;
 import net.alliknow.podcatcher.listeners.OnLoadPodcastLogoListener;
+import net.alliknow.podcatcher.listeners.OnLoadPodcastSnapshotListener;
+import net.alliknow.podcatcher.model.PodcastLoadScheduler.Priority;
+import net.alliknow.podcatcher.model.tasks.LoadPodcastSnapshotTask;
 import net.alliknow.podcatcher.model.tasks.StorePodcastListTask;
 import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastLogoTask;
 import net.alliknow.podcatcher.model.tasks.remote.LoadPodcastTask;
@@ -50,10 +54,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Our model class. Holds all the podcast and episode model data and offers
@@ -63,7 +71,7 @@ import java.util.concurrent.RejectedExecutionException;
  * should never have to create this yourself.
  */
 public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastListener,
-        OnLoadPodcastLogoListener {
+        OnLoadPodcastLogoListener, OnLoadPodcastSnapshotListener {
 
     /** The single instance */
     private static PodcastManager manager;
@@ -80,9 +88,21 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * milliseconds). If older, we will to reload.
      */
     public static final int TIME_TO_LIFE_MOBILE = 60 * 60 * 1000;
+    /**
+     * The maximum time podcast content is buffered (in milliseconds), even if
+     * the podcast's publishing cadence suggests that it will not change.
+     */
+    public static final int MAX_TIME_TO_LIFE = 24 * 60 * 60 * 1000;
     /** Maximum byte size for the logo to load when on mobile connection */
     public static final int MAX_LOGO_SIZE_MOBILE = 500000;
 
+    /** The delay before a failed podcast is retried in the background */
+    private static final long RETRY_DELAY = 10 * 60 * 1000; // 10 minutes
+    /** The retry delay for podcasts we reach, but cannot parse */
+    private static final long RETRY_DELAY_NOT_PARSEABLE = 60 * 60 * 1000; // one hour
+    /** The maximum retry delay */
+    private static final long MAX_RETRY_DELAY = 24 * 60 * 60 * 1000; // one day
+
     /** Max stale time we accept from http cache on fast connections */
     private static final int MAX_STALE = 60 * 60; // one hour
     /** Max stale time we accept from http cache on mobile connections */
@@ -99,6 +119,12 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     private List<Podcast> podcastList;
     /** Flag to indicate whether podcast list is dirty */
     private boolean podcastListChanged;
+    /** The podcasts in the list by their URL */
+    private Map<String, Podcast> podcastsByUrl = new ConcurrentHashMap<>();
+    /** The episodes of all podcasts in the list by their media URL */
+    private ConcurrentMap<String, Episode> episodesByUrl = new ConcurrentHashMap<>();
+    /** The episode lists put into the episode index by podcast URL */
+    private Map<String, List<Episode>> indexedEpisodes = new ConcurrentHashMap<>();
 
     /**
      * Flag to indicate whether we run in a restricted profile and should block
@@ -110,6 +136,22 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     private Map<Podcast, LoadPodcastTask> loadPodcastTasks = new HashMap<>();
     /** The current podcast logo load tasks */
     private Map<Podcast, LoadPodcastLogoTask> loadPodcastLogoTasks = new HashMap<>();
+    /** The podcasts currently restored from their snapshot and their priority */
+    private Map<Podcast, Priority> restoringPodcasts = new HashMap<>();
+    /** The store for the podcasts' content snapshots */
+    private PodcastSnapshotStore snapshotStore;
+    /**
+     * The executor restoring podcasts from their snapshots. Reading a snapshot
+     * is fast, so a single thread will do. It is also the only thread that
+     * waits for the episode metadata at start-up.
+     */
+    private Executor snapshotExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "PodcastSnapshot");
+        }
+    });
 
     /** The call-back set for the podcast list load listeners */
     private Set<OnLoadPodcastListListener> loadPodcastListListeners = new HashSet<>();
@@ -120,45 +162,62 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     /** The call-back set for the podcast logo load listeners */
     private Set<OnLoadPodcastLogoListener> loadPodcastLogoListeners = new HashSet<>();
 
+    /** The random generator used for retry jitter */
+    private Random random = new Random();
+
+    /** The scheduler running our podcast load tasks */
+    private PodcastLoadScheduler loadScheduler = new PodcastLoadScheduler();
+
+    /** Amount of milliseconds between background update runs */
+    private static final int UPDATE_INTERVAL = 1000 * 60 * 5;
+    /** Handler for the periodic background updates */
+    private Handler updateHandler = new Handler();
     /** This is the background update task */
-    private class PodcastUpdateTask extends TimerTask {
+    private Runnable updateRunnable = new Runnable() {
 
         @Override
         public void run() {
-            final boolean online = podcatcher.isOnline();
-            // This is the current time minus the time to life for the podcast
-            // minus some extra time to make sure we refresh before it if
-            // actually due
-            final Date triggerIfLoadedBefore = new Date(new Date().getTime() -
-                    (podcatcher.isOnFastConnection() ? TIME_TO_LIFE : TIME_TO_LIFE_MOBILE) -
-                    1000 * 60 * 6); // trigger if six minutes before reload
-
-            // There are some conditions here: We need to be online and there
-            // should not be too many threads open
-            if (online && (loadPodcastTasks.size() + loadPodcastLogoTasks.size() < 50))
+            // We need to be online here
+            if (podcatcher.isOnline()) {
+                final long now = System.currentTimeMillis();
+
                 for (Podcast podcast : podcastList) {
                     // There are more conditions here: The podcast is not
-                    // currently loading, and has not been loaded recently
-                    if (!loadPodcastTasks.containsKey(podcast) &&
-                            (podcast.getLastLoaded() == null || podcast.getLastLoaded().before(
-                                    triggerIfLoadedBefore))) {
+                    // currently loading, and has not been loaded recently. We
+                    // add some extra time to make sure we refresh before the
+                    // podcast's time to life is actually over.
+                    // Podcasts that failed to load recently are skipped.
+                    final long lastLoaded = podcast.getLastLoadedMillis();
+                    if (isLoading(podcast) || now < podcast.getRetryAfter())
+                        continue;
+
+                    // Podcasts not loaded yet are restored from their
+                    // snapshot first. The restore task looks for the snapshot
+                    // off the main thread and loads the podcast if there is
+                    // none.
+                    if (!podcast.isLoaded())
+                        restore(podcast, Priority.BACKGROUND);
+                    else if (now - lastLoaded > getTimeToLife(podcast) -
+                            1000 * 60 * 6) { // trigger six minutes before reload
                         // Download podcast RSS feed (async)
                         final LoadPodcastTask task = new LoadPodcastTask(PodcastManager.this);
                         task.setBlockExplicitEpisodes(blockExplicit);
-                        try {
-                            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, podcast);
-
-                            // Keep task reference, so we can cancel the load
-                            // and determine whether a task for this podcast is
-                            // already running
-                            loadPodcastTasks.put(podcast, task);
-                        } catch (RejectedExecutionException ree) {
-                            // Skip update
-                        }
+                        task.setSnapshotStore(snapshotStore);
+
+                        // Keep task reference, so we can cancel the load and
+                        // determine whether a task for this podcast is already
+                        // running
+                        loadPodcastTasks.put(podcast, task);
+                        // Background updates wait for all loads the user asked
+                        // for
+                        loadScheduler.execute(task, podcast, Priority.BACKGROUND);
                     }
                 }
+            }
+
+            updateHandler.postDelayed(updateRunnable, UPDATE_INTERVAL);
         }
-    }
+    };
 
     /**
      * Init the podcast data.
@@ -172,6 +231,8 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
 
         // Check for preferences
         this.blockExplicit = checkForRestrictedProfileBlocksExplicit();
+        // Podcast content snapshots live in the app's private storage
+        this.snapshotStore = new PodcastSnapshotStore(app);
     }
 
     /**
@@ -211,6 +272,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         // Set the member
         this.podcastList = list;
         this.podcastListChanged = false;
+        rebuildIndex();
 
         // Put some nice sample podcasts for testing
         // if (podcatcher.isInDebugMode())
@@ -225,13 +287,12 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             loadLogo(podcast, true);
 
         // Run podcast update task every five minutes
-        final int fiveMinutes = 1000 * 60 * 5;
         final boolean isSelectAllOnStart = PreferenceManager.getDefaultSharedPreferences(
                 podcatcher.getApplicationContext()).getBoolean(
                 SettingsActivity.KEY_SELECT_ALL_ON_START, false);
-        new Timer().schedule(new PodcastUpdateTask(),
-                isSelectAllOnStart || podcatcher.isInDebugMode() ?
-                        fiveMinutes : 0, fiveMinutes);
+        updateHandler.removeCallbacks(updateRunnable);
+        updateHandler.postDelayed(updateRunnable,
+                isSelectAllOnStart || podcatcher.isInDebugMode() ? UPDATE_INTERVAL : 0);
     }
 
     @Override
@@ -271,6 +332,49 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @see EpisodeManager#blockUntilEpisodeMetadataIsLoaded()
      */
     public void load(Podcast podcast) {
+        load(podcast, Priority.USER);
+    }
+
+    /**
+     * Load data for given podcast from its URL. This works like
+     * {@link #load(Podcast)}, but lets you define the priority of the load
+     * compared to all the other podcasts waiting to load. If the podcast is
+     * already waiting with a lower priority, it will be moved ahead.
+     * <p>
+     * If the podcast has not been loaded yet, but there is a snapshot of its
+     * content, the snapshot is restored first and the listeners are alerted
+     * right away. If the snapshot is too old, the podcast is then refreshed in
+     * the background and the listeners are called again once this completes.
+     * </p>
+     * 
+     * @param podcast Podcast to load.
+     * @param priority The priority to load with.
+     * @see OnLoadPodcastListener
+     */
+    public void load(Podcast podcast, Priority priority) {
+        // Podcast is restoring, the load will continue once this is done
+        if (restoringPodcasts.containsKey(podcast)) {
+            if (priority.compareTo(restoringPodcasts.get(podcast)) < 0)
+                restoringPodcasts.put(podcast, priority);
+        }
+        // Never loaded, but we have a snapshot to show right away
+        else if (!podcast.isLoaded() && !loadPodcastTasks.containsKey(podcast)
+                && snapshotStore.exists(podcast))
+            restore(podcast, priority);
+        else
+            loadRemote(podcast, priority);
+    }
+
+    private void restore(Podcast podcast, Priority priority) {
+        // Not on the shared executors, the task waits for the episode
+        // metadata and would hold up all other tasks using them
+        new LoadPodcastSnapshotTask(this, snapshotStore)
+                .executeOnExecutor(snapshotExecutor, podcast);
+
+        restoringPodcasts.put(podcast, priority);
+    }
+
+    private void loadRemote(Podcast podcast, Priority priority) {
         // Only load podcast if not too old
         if (!shouldReload(podcast))
             onPodcastLoaded(podcast);
@@ -279,22 +383,24 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             // Download podcast RSS feed (async)
             final LoadPodcastTask task = new LoadPodcastTask(this);
             task.setBlockExplicitEpisodes(blockExplicit);
+            // Only keep snapshots of the podcasts in our list
+            if (contains(podcast))
+                task.setSnapshotStore(snapshotStore);
             // We will accept stale versions from the cache in certain
             // situations
             task.setMaxStale(podcatcher.isOnline() ?
                     podcatcher.isOnFastConnection() ? MAX_STALE : MAX_STALE_MOBILE
                     : MAX_STALE_OFFLINE);
 
-            try {
-                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, podcast);
-
-                // Keep task reference, so we can cancel the load and determine
-                // whether a task for this podcast is already running
-                loadPodcastTasks.put(podcast, task);
-            } catch (RejectedExecutionException ree) {
-                // Skip update TODO We might need a better solution here?
-            }
+            // Keep task reference, so we can cancel the load and determine
+            // whether a task for this podcast is already running
+            loadPodcastTasks.put(podcast, task);
+            loadScheduler.execute(task, podcast, priority);
         }
+        // Already waiting to load, make sure it is not behind less important
+        // loads
+        else
+            loadScheduler.promote(podcast, priority);
     }
 
     /**
@@ -304,14 +410,43 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return <code>true</code> iff loading.
      */
     public boolean isLoading(Podcast podcast) {
-        return loadPodcastTasks.containsKey(podcast);
+        return loadPodcastTasks.containsKey(podcast) || restoringPodcasts.containsKey(podcast);
     }
 
     /**
      * @return The number of podcasts currently loading.
      */
     public int getLoadCount() {
-        return loadPodcastTasks.size();
+        return loadPodcastTasks.size() + restoringPodcasts.size();
+    }
+
+    @Override
+    public void onPodcastSnapshotLoaded(Podcast podcast) {
+        final Priority priority = restoringPodcasts.remove(podcast);
+
+        // The podcast might have been removed in the meantime
+        if (priority != null) {
+            indexEpisodes(podcast);
+
+            // Refresh in the background if the snapshot is too old, the
+            // listeners are called again once this is done
+            if (shouldReload(podcast))
+                loadRemote(podcast, priority);
+
+            // Notify listeners, the content is available now
+            if (!(blockExplicit && podcast.isExplicit()))
+                for (OnLoadPodcastListener listener : loadPodcastListeners)
+                    listener.onPodcastLoaded(podcast);
+        }
+    }
+
+    @Override
+    public void onPodcastSnapshotLoadFailed(Podcast podcast) {
+        final Priority priority = restoringPodcasts.remove(podcast);
+
+        // No snapshot, we need to go and load the podcast
+        if (priority != null)
+            loadRemote(podcast, priority);
     }
 
     @Override
@@ -324,7 +459,22 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     @Override
     public void onPodcastLoaded(Podcast podcast) {
         // Remove from the map of loading task
-        loadPodcastTasks.remove(podcast);
+        final LoadPodcastTask task = loadPodcastTasks.remove(podcast);
+        // Learn about feeds in our list that moved, other instances (e.g.
+        // podcasts about to be added) keep the location they were requested
+        // with, since their callers look for that
+        if (task != null && task.getPermanentRedirect() != null
+                && podcastsByUrl.get(podcast.getUrl()) == podcast)
+            movePodcast(podcast, task.getPermanentRedirect());
+        // Make the new episodes available for look-up
+        indexEpisodes(podcast);
+        // Mark podcast list dirty, so the http cache validators, the
+        // publishing cadence and the failed count are persisted, the
+        // validators and the cadence only if they actually changed (most
+        // loads do not change them)
+        if ((task != null && task.hasLoadInfoChanged())
+                || podcast.getFailedLoadAttemptCount() > 0 || podcast.getRetryAfter() != -1)
+            podcastListChanged = true;
         // Clear the failed count for this podcast
         podcast.resetFailedLoadAttempts();
 
@@ -340,8 +490,14 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     public void onPodcastLoadFailed(Podcast podcast, PodcastLoadError code) {
         // Remove from the map of loading task
         loadPodcastTasks.remove(podcast);
-        // Increment the failed load attempt count
-        podcast.incrementFailedLoadAttempts();
+        // Increment the failed load attempt count and back off, unless the
+        // load was cancelled or interrupted (the reason is unknown then)
+        if (code != PodcastLoadError.UNKNOWN) {
+            podcast.incrementFailedLoadAttempts();
+            podcast.setRetryAfter(new Date().getTime() + getRetryDelay(podcast, code));
+            // Mark podcast list dirty, so the back-off survives restarts
+            podcastListChanged = true;
+        }
 
         // Notify listeners
         for (OnLoadPodcastListener listener : loadPodcastListeners)
@@ -421,6 +577,10 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
                 // Add the new podcast
                 podcastList.add(newPodcast);
                 Collections.sort(podcastList);
+                if (newPodcast.getUrl() != null) {
+                    podcastsByUrl.put(newPodcast.getUrl(), newPodcast);
+                    indexEpisodes(newPodcast);
+                }
 
                 // Alert listeners of new podcast
                 for (OnChangePodcastListListener listener : changePodcastListListeners)
@@ -431,6 +591,44 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             }
     }
 
+    /**
+     * Move the given podcast to a new feed location, so future loads do not
+     * need to follow the redirect. The episode metadata stays attached to the
+     * podcast. This does nothing if the new location is already in the list.
+     * The podcast's hash code changes, so collections outside the manager
+     * should hold podcasts by identity.
+     * 
+     * @param podcast Podcast to move.
+     * @param newUrl The new location.
+     */
+    private void movePodcast(Podcast podcast, String newUrl) {
+        final String oldUrl = podcast.getUrl();
+
+        // This also catches redirects that do not change the normalized URL
+        if (!contains(new Podcast(null, newUrl))) {
+            // The podcast's hash code changes, so we need to re-insert it
+            final LoadPodcastLogoTask logoTask = loadPodcastLogoTasks.remove(podcast);
+            final Priority restoring = restoringPodcasts.remove(podcast);
+            final boolean listed = podcastsByUrl.remove(oldUrl) != null;
+            final List<Episode> episodes = indexedEpisodes.remove(oldUrl);
+            podcast.setUrl(newUrl);
+            if (logoTask != null)
+                loadPodcastLogoTasks.put(podcast, logoTask);
+            if (restoring != null)
+                restoringPodcasts.put(podcast, restoring);
+            if (listed)
+                podcastsByUrl.put(podcast.getUrl(), podcast);
+            if (episodes != null)
+                indexedEpisodes.put(podcast.getUrl(), episodes);
+
+            EpisodeManager.getInstance().updatePodcastUrl(oldUrl, podcast.getUrl());
+            snapshotStore.move(podcast, oldUrl);
+
+            // Mark podcast list dirty
+            podcastListChanged = true;
+        }
+    }
+
     /**
      * Remove a podcast from the list of podcasts.
      * {@link OnChangePodcastListListener}s will be notified. If the given index
@@ -443,6 +641,11 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         if (index >= 0 && index < size()) {
             // Remove podcast at given position
             Podcast removedPodcast = podcastList.remove(index);
+            podcastsByUrl.remove(removedPodcast.getUrl());
+            unindexEpisodes(removedPodcast);
+            // Drop its content snapshot
+            restoringPodcasts.remove(removedPodcast);
+            snapshotStore.delete(removedPodcast);
 
             // Alert listeners of removed podcast
             for (OnChangePodcastListListener listener : changePodcastListListeners)
@@ -489,6 +692,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         if (podcastListChanged && podcastList != null) {
             final StorePodcastListTask task = new StorePodcastListTask(podcatcher, null);
             task.setWriteAuthorization(true);
+            task.setWriteLoadInfo(true);
             task.execute(new ArrayList<>(podcastList));
 
             // Reset the flag, so the list will only be saved if changed again
@@ -513,7 +717,8 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return The podcast index, or -1 if not in the list.
      */
     public int indexOf(Podcast podcast) {
-        if (podcastList == null)
+        // Only search the list if the podcast is actually in there
+        if (podcastList == null || !contains(podcast))
             return -1;
         else
             return podcastList.indexOf(podcast);
@@ -526,7 +731,8 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return <code>true</code> iff the podcast is present in list.
      */
     public boolean contains(Podcast podcast) {
-        return indexOf(podcast) != -1;
+        return podcast != null && podcast.getUrl() != null
+                && podcastsByUrl.containsKey(podcast.getUrl());
     }
 
     /**
@@ -536,17 +742,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return The podcast object, or <code>null</code> if not found.
      */
     public Podcast findPodcastForUrl(String url) {
-        // Make sure search only runs once the podcast list is actually
-        // available.
-        if (podcastList != null) {
-
-            // Find the podcast object
-            for (Podcast podcast : podcastList)
-                if (podcast.getUrl().equals(url))
-                    return podcast;
-        }
-
-        return null;
+        return url == null ? null : podcastsByUrl.get(url);
     }
 
     /**
@@ -557,17 +753,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return The episode object, or <code>null</code> if not found.
      */
     public Episode findEpisodeForUrl(String url) {
-        // Make sure search only runs once the podcast list is actually
-        // available.
-        if (podcastList != null && url != null) {
-            // Go try find the episode
-            for (Podcast podcast : podcastList)
-                for (Episode episode : podcast.getEpisodes())
-                    if (episode.getMediaUrl().equals(url))
-                        return episode;
-        }
-
-        return null;
+        return url == null ? null : episodesByUrl.get(url);
     }
 
     /**
@@ -586,9 +772,13 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             if (podcastUrl == null)
                 return findEpisodeForUrl(episodeUrl);
             else {
-                final Podcast podcast = findPodcastForUrl(podcastUrl);
+                final Episode indexed = findEpisodeForUrl(episodeUrl);
+                if (indexed != null && podcastUrl.equals(indexed.getPodcast().getUrl()))
+                    return indexed;
 
-                // Go try find the episode
+                // The media file might be listed by more than one podcast, go
+                // try find the episode
+                final Podcast podcast = findPodcastForUrl(podcastUrl);
                 if (podcast != null)
                     for (Episode episode : podcast.getEpisodes())
                         if (episode.getMediaUrl().equals(episodeUrl))
@@ -599,6 +789,63 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         return null;
     }
 
+    /**
+     * Rebuild the podcast and episode indexes from the podcast list.
+     */
+    private void rebuildIndex() {
+        podcastsByUrl.clear();
+        episodesByUrl.clear();
+        indexedEpisodes.clear();
+
+        for (Podcast podcast : podcastList)
+            if (podcast.getUrl() != null) {
+                podcastsByUrl.put(podcast.getUrl(), podcast);
+                indexEpisodes(podcast);
+            }
+    }
+
+    /**
+     * Put the podcast's current episodes into the episode index, replacing
+     * those indexed before. If more than one podcast lists the same media
+     * file, the podcast indexed last wins.
+     * 
+     * @param podcast Podcast to index, needs to be in the list.
+     */
+    private void indexEpisodes(Podcast podcast) {
+        // The podcast might have been removed in the meantime
+        if (!contains(podcast))
+            return;
+
+        // The episode list is never changed, but replaced on load
+        final List<Episode> episodes = podcast.getEpisodes();
+        final List<Episode> formerEpisodes = indexedEpisodes.put(podcast.getUrl(), episodes);
+
+        if (episodes != formerEpisodes) {
+            removeFromIndex(formerEpisodes);
+
+            for (Episode episode : episodes)
+                if (episode.getMediaUrl() != null)
+                    episodesByUrl.put(episode.getMediaUrl(), episode);
+        }
+    }
+
+    /**
+     * Remove the podcast's episodes from the episode index.
+     * 
+     * @param podcast Podcast to drop from the index.
+     */
+    private void unindexEpisodes(Podcast podcast) {
+        removeFromIndex(indexedEpisodes.remove(podcast.getUrl()));
+    }
+
+    private void removeFromIndex(List<Episode> episodes) {
+        if (episodes != null)
+            for (Episode episode : episodes)
+                if (episode.getMediaUrl() != null)
+                    // Only if not replaced by another podcast's episode
+                    episodesByUrl.remove(episode.getMediaUrl(), episode);
+    }
+
     /**
      * Add load podcast list listener.
      * 
@@ -691,18 +938,91 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      */
     private boolean shouldReload(Podcast podcast) {
         // Has never been loaded
-        if (podcast.getLastLoaded() == null)
+        if (!podcast.isLoaded())
             return true;
         // Has been loaded and we are now offline
         else if (!podcatcher.isOnline())
             return false;
         // Check age
         else {
-            final long age = new Date().getTime() - podcast.getLastLoaded().getTime();
-            return age > (podcatcher.isOnFastConnection() ? TIME_TO_LIFE : TIME_TO_LIFE_MOBILE);
+            final long age = System.currentTimeMillis() - podcast.getLastLoadedMillis();
+            return age > getTimeToLife(podcast);
         }
     }
 
+    /**
+     * Find the amount of time the content of the given podcast stays fresh
+     * after it has been loaded. This depends on the connection and on the
+     * podcast's publishing cadence: Podcasts are refreshed regularly close to
+     * the time a new episode is expected, less often in between and rarely if
+     * they have not published for a long time.
+     * 
+     * @param podcast Podcast to check, needs to have been loaded before.
+     * @return The time to life in milliseconds.
+     */
+    private long getTimeToLife(Podcast podcast) {
+        final long minimum = podcatcher.isOnFastConnection() ? TIME_TO_LIFE : TIME_TO_LIFE_MOBILE;
+        final long interval = podcast.getPublishingInterval();
+        final long newest = podcast.getNewestEpisodeDate();
+
+        // We do not know the podcast's cadence
+        if (interval <= 0 || newest <= 0)
+            return minimum;
+
+        final long lastLoaded = podcast.getLastLoadedMillis();
+        final long expectedRelease = newest + interval;
+        long result;
+
+        // Next episode is not expected yet, wait until shortly before the
+        // release, but check in between in case the podcast publishes early
+        if (lastLoaded < expectedRelease - minimum)
+            result = Math.min(expectedRelease - minimum - lastLoaded, interval / 4);
+        // Next episode is due or late, check often
+        else if (lastLoaded < expectedRelease + interval)
+            result = minimum;
+        // The podcast seems to be dormant, check less often the longer it
+        // has been quiet
+        else
+            result = (lastLoaded - expectedRelease) / 4;
+
+        return Math.max(minimum, Math.min(result, MAX_TIME_TO_LIFE));
+    }
+
+    /**
+     * Find the amount of time to wait before the given podcast is loaded in the
+     * background again after it failed to load. This grows exponentially with
+     * the number of failed loads and depends on the type of failure. Some
+     * random jitter is added, so that podcasts failing together are not
+     * retried together.
+     * 
+     * @param podcast Podcast that failed to load.
+     * @param code The reason for the failure.
+     * @return The delay in milliseconds.
+     */
+    private long getRetryDelay(Podcast podcast, PodcastLoadError code) {
+        long delay;
+
+        switch (code) {
+            case NOT_REACHABLE:
+                delay = RETRY_DELAY;
+                break;
+            case NOT_PARSEABLE:
+                delay = RETRY_DELAY_NOT_PARSEABLE;
+                break;
+            default:
+                // Authorization and explicit content issues need the user to
+                // act, retrying does not help
+                delay = MAX_RETRY_DELAY;
+        }
+
+        // Double the delay with each failed attempt
+        final int exponent = Math.min(Math.max(podcast.getFailedLoadAttemptCount() - 1, 0), 16);
+        delay = Math.min(delay << exponent, MAX_RETRY_DELAY);
+
+        // Add jitter of +/- 25 percent
+        return (long) (delay * (0.75 + random.nextDouble() / 2));
+    }
+
     /**
      * Check whether we are in a restricted profile and should filter out
      * podcasts (suggestions) with explicit content.
@@ -751,5 +1071,6 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
                 "http://downloads.bbc.co.uk/podcasts/scotland/litirbheag/rss.xml"));
 
         Collections.sort(podcastList);
+        rebuildIndex();
     }
 }
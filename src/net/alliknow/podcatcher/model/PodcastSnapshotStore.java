@@ -0,0 +1,353 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ * 
+ * This file is part of PodCatcher Deluxe.
+ * 
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import net.alliknow.podcatcher.model.types.Episode;
+import net.alliknow.podcatcher.model.types.FeedEntity;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps binary snapshots of the podcasts' parsed content in the app's private
+ * storage, one file per podcast. This allows the app to show the episodes
+ * right away after start-up or when offline, without having to load and parse
+ * the RSS files first. Snapshot files start with a magic number and a format
+ * version, files in other versions are ignored.
+ * <p>
+ * Episodes get their descriptions from the snapshot file on demand via
+ * {@link #readEpisodeText(Episode, boolean)}, the most recent ones are cached.
+ * The store therefore holds the podcast's lock while replacing, moving or
+ * deleting its snapshot. Otherwise, it does not synchronize access to the
+ * snapshot of a podcast, make sure not to read and write the same podcast's
+ * snapshot at the same time.
+ * </p>
+ * 
+ * @see Podcast#writeSnapshot(DataOutputStream, EpisodeTexts)
+ * @see Podcast#readSnapshot(SnapshotInputStream, PodcastSnapshotStore, File)
+ */
+public class PodcastSnapshotStore {
+
+    /** The name of the directory we store the snapshots in */
+    public static final String SNAPSHOT_DIRECTORY = "snapshots";
+    /** The file suffix used for the snapshots */
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    /** The magic number the snapshot files start with */
+    private static final int SNAPSHOT_MAGIC = 0x50435353;
+    /** The current snapshot format version */
+    private static final int SNAPSHOT_VERSION = 2;
+    /** The buffer size used for reading and writing snapshots */
+    private static final int BUFFER_SIZE = 16 * 1024;
+    /** The number of characters of episode texts cached for all podcasts */
+    private static final int TEXT_CACHE_SIZE = 256 * 1024;
+
+    /** The directory the snapshots live in */
+    private final File directory;
+    /** The episode texts recently read, by snapshot id and position */
+    private final LruCache<String, String> texts = new LruCache<String, String>(TEXT_CACHE_SIZE) {
+
+        @Override
+        protected int sizeOf(String key, String text) {
+            return text.length();
+        }
+    };
+
+    /**
+     * Where a podcast gets its episodes' texts from when writing its
+     * snapshot.
+     */
+    public static interface EpisodeTexts {
+
+        /**
+         * @param episode The episode to get the text for.
+         * @param longDescription Whether to get the content or the
+         *            description.
+         * @return The text or <code>null</code> if not available.
+         */
+        public String get(Episode episode, boolean longDescription);
+    }
+
+    /**
+     * Create a new snapshot store.
+     * 
+     * @param context The context to find the app's private storage.
+     */
+    public PodcastSnapshotStore(Context context) {
+        this.directory = new File(context.getFilesDir(), SNAPSHOT_DIRECTORY);
+    }
+
+    /**
+     * @param podcast Podcast to check.
+     * @return Whether there is a snapshot available for the podcast.
+     */
+    public boolean exists(Podcast podcast) {
+        return getFile(podcast.getUrl()).exists();
+    }
+
+    /**
+     * Read the podcast's snapshot and restore its content from it. Snapshots
+     * found to be corrupt or in an unknown format are deleted.
+     * 
+     * @param podcast Podcast to restore.
+     * @return Whether the snapshot was found and used.
+     */
+    public boolean read(Podcast podcast) {
+        final File file = getFile(podcast.getUrl());
+        SnapshotInputStream in = null;
+        boolean result = false;
+
+        try {
+            in = new SnapshotInputStream(new BufferedInputStream(
+                    new FileInputStream(file), BUFFER_SIZE));
+
+            if (in.readInt() == SNAPSHOT_MAGIC && in.readInt() == SNAPSHOT_VERSION)
+                result = podcast.readSnapshot(in, this, file);
+            else
+                file.delete();
+        } catch (IOException ioe) {
+            // Snapshot is not available or corrupt, we will need to reload
+            file.delete();
+        } finally {
+            close(in);
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the podcast's content to its snapshot. The snapshot is replaced
+     * atomically, so it is never left half-written. Afterwards, the podcast
+     * reads its episodes' descriptions from the new snapshot.
+     * 
+     * @param podcast Podcast to write the snapshot for.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void write(Podcast podcast) throws IOException {
+        final File file = getFile(podcast.getUrl());
+        final File temp = new File(directory, file.getName() + ".tmp"
+                + Thread.currentThread().getId());
+        DataOutputStream out = null;
+        RandomAccessFile reader = null;
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Cannot create snapshot directory " + directory);
+
+            // Texts still in the former snapshot are copied over, so keep it
+            // open while writing
+            final File formerFile;
+            final long formerId;
+            synchronized (podcast) {
+                formerFile = podcast.getSnapshotFile();
+                formerId = podcast.getSnapshotId();
+            }
+
+            if (formerFile != null)
+                try {
+                    reader = new RandomAccessFile(formerFile, "r");
+                } catch (IOException ioe) {
+                    // Texts will be read one by one
+                }
+
+            final RandomAccessFile formerReader = reader;
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp), BUFFER_SIZE));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            podcast.writeSnapshot(out, new EpisodeTexts() {
+
+                @Override
+                public String get(Episode episode, boolean longDescription) {
+                    return readEpisodeText(episode, longDescription, formerReader, formerId);
+                }
+            });
+            out.close();
+            out = null;
+
+            synchronized (podcast) {
+                if (!temp.renameTo(file))
+                    throw new IOException("Cannot replace snapshot " + file);
+
+                podcast.useWrittenSnapshot(this, file);
+            }
+        } finally {
+            close(out);
+            close(reader);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Move a podcast's snapshot to its new feed location.
+     * 
+     * @param podcast The podcast already set to its new location.
+     * @param oldUrl The podcast's former feed location.
+     */
+    public void move(Podcast podcast, String oldUrl) {
+        final File file = getFile(oldUrl);
+        final File newFile = getFile(podcast.getUrl());
+
+        synchronized (podcast) {
+            if (file.exists() && file.renameTo(newFile))
+                podcast.moveSnapshot(newFile);
+            else {
+                podcast.releaseSnapshot();
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete the podcast's snapshot, if any. The podcast reads the episode
+     * descriptions still in the snapshot back into memory first.
+     * 
+     * @param podcast Podcast to delete the snapshot for.
+     */
+    public void delete(Podcast podcast) {
+        synchronized (podcast) {
+            podcast.releaseSnapshot();
+            getFile(podcast.getUrl()).delete();
+        }
+    }
+
+    /**
+     * Get one of the episode's texts, reading it from its podcast's snapshot
+     * file if it is not held in memory. The file is read without holding the
+     * podcast's lock, so callers are not blocked by snapshots being written.
+     * The text read is only used if the snapshot did not change meanwhile,
+     * otherwise this starts over.
+     * 
+     * @param episode The episode to get the text for.
+     * @param longDescription Whether to get the content or the description.
+     * @return The text or <code>null</code> if not available.
+     */
+    public String readEpisodeText(Episode episode, boolean longDescription) {
+        return readEpisodeText(episode, longDescription, null, -1);
+    }
+
+    /**
+     * Works like {@link #readEpisodeText(Episode, boolean)}, but uses the
+     * reader given if it is open on the podcast's current snapshot. Texts read
+     * from it are not cached.
+     */
+    private String readEpisodeText(Episode episode, boolean longDescription,
+            RandomAccessFile reader, long readerId) {
+        final Podcast podcast = episode.getPodcast();
+
+        while (true) {
+            final long position;
+            final File file;
+            final long id;
+
+            synchronized (podcast) {
+                position = episode.getTextPosition(longDescription);
+
+                if (position < 0)
+                    return episode.getTextInMemory(longDescription);
+                else if (podcast.getSnapshotFile() == null)
+                    return null;
+
+                file = podcast.getSnapshotFile();
+                id = podcast.getSnapshotId();
+
+                final String cached = texts.get(id + ":" + position);
+                if (cached != null)
+                    return cached;
+            }
+
+            // Copying a snapshot does not go through the cache
+            final boolean copying = reader != null && readerId == id;
+            final String text = copying ? readText(reader, position) : readText(file, position);
+
+            synchronized (podcast) {
+                if (id == podcast.getSnapshotId() && file.equals(podcast.getSnapshotFile())) {
+                    if (text != null && !copying)
+                        texts.put(id + ":" + position, text);
+
+                    return text;
+                }
+            }
+        }
+    }
+
+    private String readText(File file, long position) {
+        RandomAccessFile reader = null;
+
+        try {
+            reader = new RandomAccessFile(file, "r");
+
+            return readText(reader, position);
+        } catch (IOException ioe) {
+            // Text not available
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    private String readText(RandomAccessFile reader, long position) {
+        try {
+            reader.seek(position);
+
+            return FeedEntity.readString(reader);
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    private File getFile(String url) {
+        // Feed URLs do not make good file names, so we use their hash
+        final StringBuilder name = new StringBuilder();
+
+        try {
+            final byte[] hash = MessageDigest.getInstance("MD5").digest(
+                    String.valueOf(url).getBytes(Charset.forName("UTF-8")));
+
+            for (byte b : hash)
+                name.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        } catch (NoSuchAlgorithmException nsae) {
+            // MD5 is always available on Android
+            name.append(Integer.toHexString(String.valueOf(url).hashCode()));
+        }
+
+        return new File(directory, name.append(SNAPSHOT_SUFFIX).toString());
+    }
+
+    private void close(Closeable closeable) {
+        if (closeable != null)
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing we can do here
+            }
+    }
+}
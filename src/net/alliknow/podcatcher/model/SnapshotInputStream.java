@@ -0,0 +1,93 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ * 
+ * This file is part of PodCatcher Deluxe.
+ * 
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A data input stream that keeps track of its position, i.e. the number of
+ * bytes read or skipped so far. This allows the readers of a snapshot to
+ * remember where a value is found in the snapshot file instead of reading it.
+ * 
+ * @see PodcastSnapshotStore
+ */
+public class SnapshotInputStream extends DataInputStream {
+
+    /**
+     * Create a new snapshot stream.
+     * 
+     * @param in The stream to read from, positions are relative to its
+     *            current position.
+     */
+    public SnapshotInputStream(InputStream in) {
+        super(new CountingInputStream(in));
+    }
+
+    /**
+     * @return The number of bytes read or skipped from this stream.
+     */
+    public long getPosition() {
+        return ((CountingInputStream) in).count;
+    }
+
+    /** The actual counting, wrapped by the data input stream */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /** The number of bytes read or skipped */
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0)
+                count++;
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int result = super.read(buffer, offset, length);
+            if (result > 0)
+                count += result;
+
+            return result;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            final long result = super.skip(byteCount);
+            count += result;
+
+            return result;
+        }
+
+        @Override
+        public boolean markSupported() {
+            // Resetting would break the count
+            return false;
+        }
+    }
+}
@@ -33,7 +33,6 @@ import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.Podcast;
 import net.alliknow.podcatcher.model.types.Progress;
 
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -203,9 +202,8 @@ public abstract class SyncController implements OnLoadPodcastListener, OnChangeP
         if (podcast != null) {
             // Only act if the podcast really has been re-loaded recently (last
             // 30 secs.)
-            final Date loadDate = podcast.getLastLoaded();
-
-            if (loadDate != null && new Date().getTime() - loadDate.getTime() < 1000 * 30)
+            if (podcast.isLoaded()
+                    && System.currentTimeMillis() - podcast.getLastLoadedMillis() < 1000 * 30)
                 syncEpisodeMetadata();
         }
     }
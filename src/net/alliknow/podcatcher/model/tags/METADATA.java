@@ -35,4 +35,7 @@ public class METADATA {
     public static final String PODCAST_NAME = "podcastName";
     public static final String PODCAST_URL = "podcastUrl";
     public static final String LOCAL_FILE_PATH = "localFilePath";
+
+    public static final String JOURNAL = "journal";
+    public static final String JOURNAL_ID = "id";
 }
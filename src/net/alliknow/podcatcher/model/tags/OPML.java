@@ -32,4 +32,10 @@ public abstract class OPML {
 
     public static final String EXTRA_USER = "user";
     public static final String EXTRA_PASS = "pass";
+    public static final String EXTRA_ETAG = "etag";
+    public static final String EXTRA_LAST_MODIFIED = "lastModified";
+    public static final String EXTRA_INTERVAL = "publishingInterval";
+    public static final String EXTRA_NEWEST_EPISODE = "newestEpisode";
+    public static final String EXTRA_FAILED_LOADS = "failedLoads";
+    public static final String EXTRA_RETRY_AFTER = "retryAfter";
 }
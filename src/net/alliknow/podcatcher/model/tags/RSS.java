@@ -34,6 +34,7 @@ public class RSS {
     public static final String TYPE = "type";
     public static final String HREF = "href";
     public static final String LINK = "link";
+    public static final String GUID = "guid";
     public static final String DATE = "date";
     public static final String PUBDATE = "pubDate";
     public static final String DURATION = "duration";
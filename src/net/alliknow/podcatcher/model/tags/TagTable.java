@@ -0,0 +1,142 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ * 
+ * This file is part of PodCatcher Deluxe.
+ * 
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model.tags;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * A small, fixed-size lookup table mapping XML tag names to handlers of the
+ * given type. The table is case-insensitive and, where an entry defines a
+ * namespace, namespace-aware. Looking up the parser's current tag does not
+ * allocate any objects, which makes it cheap to use for every start tag in a
+ * feed, even for the many tags we do not know.
+ * 
+ * @param <T> The type of the values to map the tags to.
+ */
+public class TagTable<T> {
+
+    /** The tag names (as given) by slot */
+    private final String[] names;
+    /** The tag namespaces by slot, <code>null</code> means any namespace */
+    private final String[] namespaces;
+    /** The values by slot */
+    private final Object[] values;
+    /** The mask to map hashes to slots */
+    private final int mask;
+
+    /** The number of entries in the table */
+    private int size = 0;
+
+    /**
+     * Create a new table.
+     * 
+     * @param capacity The maximum number of entries to put in the table.
+     */
+    public TagTable(int capacity) {
+        // Use a power of two with plenty of room to keep probe chains short
+        int slots = 8;
+        while (slots < capacity * 4)
+            slots <<= 1;
+
+        this.names = new String[slots];
+        this.namespaces = new String[slots];
+        this.values = new Object[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Add an entry to the table.
+     * 
+     * @param name The tag name (local name if the parser is namespace-aware),
+     *            matched ignoring case.
+     * @param namespace The tag's namespace or <code>null</code> to match the
+     *            name in any namespace.
+     * @param value The value to map to.
+     * @return The table itself.
+     * @throws IllegalStateException If the table is full.
+     */
+    public TagTable<T> put(String name, String namespace, T value) {
+        if (size * 4 >= names.length * 3)
+            throw new IllegalStateException("Tag table is full");
+
+        int slot = hash(name) & mask;
+        while (names[slot] != null)
+            slot = (slot + 1) & mask;
+
+        names[slot] = name;
+        namespaces[slot] = namespace;
+        values[slot] = value;
+        size++;
+
+        return this;
+    }
+
+    /**
+     * Add an entry to the table, matching the name in any namespace.
+     * 
+     * @param name The tag name, matched ignoring case.
+     * @param value The value to map to.
+     * @return The table itself.
+     * @see #put(String, String, Object)
+     */
+    public TagTable<T> put(String name, T value) {
+        return put(name, null, value);
+    }
+
+    /**
+     * Find the value for the tag the parser currently points at.
+     * 
+     * @param parser The parser set to a start or end tag.
+     * @return The value for the tag or <code>null</code> if the tag is not in
+     *         the table.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(XmlPullParser parser) {
+        final String name = parser.getName();
+        if (name == null)
+            return null;
+
+        int slot = hash(name) & mask;
+        while (names[slot] != null) {
+            if (names[slot].equalsIgnoreCase(name)
+                    && (namespaces[slot] == null || namespaces[slot].equals(parser.getNamespace())))
+                return (T) values[slot];
+
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return A hash code of the name that is the same for all names equal
+     *         ignoring case.
+     */
+    private static int hash(String name) {
+        int hash = 0;
+
+        for (int index = 0; index < name.length(); index++) {
+            final char c = name.charAt(index);
+
+            hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') :
+                    c < 128 ? c : Character.toLowerCase(c));
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -20,11 +20,14 @@ package net.alliknow.podcatcher.model.tasks;
 import android.content.Context;
 import android.os.AsyncTask;
 import android.preference.PreferenceManager;
+import android.util.Log;
 
 import net.alliknow.podcatcher.SettingsActivity;
 import net.alliknow.podcatcher.listeners.OnLoadEpisodeMetadataListener;
 import net.alliknow.podcatcher.model.EpisodeDownloadManager;
 import net.alliknow.podcatcher.model.EpisodeManager;
+import net.alliknow.podcatcher.model.EpisodeMetadataSnapshot;
+import net.alliknow.podcatcher.model.ParserUtils;
 import net.alliknow.podcatcher.model.tags.METADATA;
 import net.alliknow.podcatcher.model.types.EpisodeMetadata;
 import net.alliknow.podcatcher.model.types.Progress;
@@ -32,23 +35,32 @@ import net.alliknow.podcatcher.preferences.DownloadFolderPreference;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Load the episode metadata from the file system.
+ * Load the episode metadata from the file system. This reads the last snapshot
+ * and replays the journal of changes made since on top of it. If there is no
+ * binary snapshot yet, the XML file used before is read and migrated.
+ * 
+ * @see StoreEpisodeMetadataTask
  */
 public class LoadEpisodeMetadataTask extends
         AsyncTask<Void, Progress, Map<String, EpisodeMetadata>> {
 
+    /** Our log tag */
+    private static final String TAG = "LoadEpisodeMetadataTask";
+
     /** Our context */
     private Context context;
     /** The listener callback */
@@ -61,7 +73,7 @@ public class LoadEpisodeMetadataTask extends
      * @param listener Callback to be alerted on completion. Could be
      *            <code>null</code>, but then nobody would ever know that this
      *            task finished.
-     * @see EpisodeManager#METADATA_FILENAME
+     * @see EpisodeManager#METADATA_SNAPSHOT_FILENAME
      */
     public LoadEpisodeMetadataTask(Context context, OnLoadEpisodeMetadataListener listener) {
         this.context = context;
@@ -70,21 +82,98 @@ public class LoadEpisodeMetadataTask extends
 
     @Override
     protected Map<String, EpisodeMetadata> doInBackground(Void... params) {
-        // Create resulting data structure and file stream
+        // Create resulting data structure
         Map<String, EpisodeMetadata> result = new ConcurrentHashMap<>();
+        String journalId = null;
+        boolean snapshotBroken = false;
+        boolean journalBroken = false;
+        boolean migrate = false;
+
+        // 1. Read the snapshot
+        final File snapshot = context.getFileStreamPath(
+                EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+        try {
+            if (snapshot.exists())
+                journalId = EpisodeMetadataSnapshot.read(snapshot, result);
+            else {
+                // Nothing written since the update, read the old XML file
+                // and write the snapshot once (see below)
+                migrate = context.getFileStreamPath(EpisodeManager.METADATA_FILENAME).exists();
+                journalId = readXmlSnapshot(result);
+            }
+        } catch (Exception e) {
+            // Pass, metadata might be empty, that's okay. Do not keep the
+            // records read before the binary snapshot turned out to be
+            // corrupt, they might be garbage.
+            if (snapshot.exists()) {
+                Log.d(TAG, "Episode metadata snapshot is corrupt, recovering from journal", e);
+
+                result.clear();
+                snapshotBroken = true;
+            }
+        }
+
+        // 2. Replay the journal, if the snapshot is corrupt, the journal is
+        // all we have left, so we take whatever it has
+        try {
+            // The journal does not belong to the snapshot, i.e. the app
+            // stopped while compacting and the snapshot has all the data
+            if (!replayJournal(result, journalId, snapshotBroken))
+                context.deleteFile(EpisodeManager.METADATA_JOURNAL_FILENAME);
+        } catch (FileNotFoundException e) {
+            // Pass, there might be no journal yet
+        } catch (Exception e) {
+            // The journal's tail is broken, the app probably stopped while
+            // writing to it. We need to start over (see below).
+            journalBroken = true;
+        }
+
+        // 3. Do some house keeping since file availability might have
+        // changed
+        cleanMetadata(result);
+
+        // 4. Write a new snapshot if the journal is broken, since anything
+        // appended to it would be lost on the next replay, if the snapshot is
+        // corrupt, or if the metadata came from the old XML file
+        if (journalBroken || snapshotBroken || migrate)
+            try {
+                new StoreEpisodeMetadataTask(context, null, result).compact();
+
+                // The snapshot and its journal have all the data now
+                if (migrate)
+                    context.deleteFile(EpisodeManager.METADATA_FILENAME);
+            } catch (IOException e) {
+                // Without the journal, the next store will try again. Keep it
+                // if the snapshot is corrupt though, the next load will
+                // recover from it again.
+                if (!snapshotBroken)
+                    context.deleteFile(EpisodeManager.METADATA_JOURNAL_FILENAME);
+            }
+
+        return result;
+    }
+
+    @Override
+    protected void onPostExecute(Map<String, EpisodeMetadata> result) {
+        if (listener != null)
+            listener.onEpisodeMetadataLoaded(result);
+    }
+
+    private String readXmlSnapshot(Map<String, EpisodeMetadata> result)
+            throws XmlPullParserException, IOException {
         InputStream fileStream = null;
+        XmlPullParser parser = null;
+        String journalId = null;
 
         try {
-            // 1. Build parser
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            // Create the parser to use
-            XmlPullParser parser = factory.newPullParser();
+            // 1. Get the parser to use
+            parser = ParserUtils.getParser(false);
 
-            // 2. Open default podcast file
+            // 2. Open old metadata file
             fileStream = context.openFileInput(EpisodeManager.METADATA_FILENAME);
             parser.setInput(fileStream, StoreFileTask.FILE_ENCODING);
 
-            // 3. Parse the OPML file
+            // 3. Parse the file
             int eventType = parser.next();
 
             // Read complete document
@@ -100,35 +189,101 @@ public class LoadEpisodeMetadataTask extends
 
                         result.put(key, metadata);
                     }
-
+                    // The root tag knows the journal that belongs to it
+                    else if (tagName.equalsIgnoreCase("xml"))
+                        journalId = parser.getAttributeValue(null, METADATA.JOURNAL);
                 }
 
                 // Done, get next parsing event
                 eventType = parser.next();
             }
-
-            // 4. Do some house keeping since file availability might have
-            // changed
-            cleanMetadata(result);
-        } catch (Exception e) {
-            // Pass, metadata might be empty, that's okay
         } finally {
-            // Make sure we close the file stream
-            if (fileStream != null)
-                try {
-                    fileStream.close();
-                } catch (IOException e) {
-                    // Nothing we can do here
+            close(fileStream, parser);
+        }
+
+        return journalId;
+    }
+
+    /**
+     * Apply the records in the journal to the metadata given. Records are
+     * applied as they are read, so if the journal is broken at its end, all
+     * records before are applied when the exception is thrown.
+     * 
+     * @param result The metadata from the snapshot to update.
+     * @param journalId The id of the journal the snapshot refers to.
+     * @param anyJournal Whether to replay the journal no matter which snapshot
+     *            it belongs to, e.g. because the snapshot is lost.
+     * @return <code>false</code> if the journal does not match the snapshot
+     *         and thus was not replayed.
+     * @throws FileNotFoundException If there is no journal.
+     * @throws XmlPullParserException If the journal is broken.
+     * @throws IOException If the journal is broken or cannot be read.
+     */
+    private boolean replayJournal(Map<String, EpisodeMetadata> result, String journalId,
+            boolean anyJournal) throws XmlPullParserException, IOException {
+        InputStream fileStream = null;
+        XmlPullParser parser = null;
+        boolean matchesSnapshot = false;
+
+        try {
+            parser = ParserUtils.getParser(false);
+
+            // The journal is a list of records, give it a root tag
+            fileStream = new SequenceInputStream(getBytes("<xml>"), new SequenceInputStream(
+                    context.openFileInput(EpisodeManager.METADATA_JOURNAL_FILENAME),
+                    getBytes("</xml>")));
+            parser.setInput(fileStream, StoreFileTask.FILE_ENCODING);
+
+            int eventType = parser.next();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    String tagName = parser.getName();
+
+                    // The journal starts with its id
+                    if (tagName.equalsIgnoreCase(METADATA.JOURNAL)) {
+                        matchesSnapshot = anyJournal || journalId != null && journalId.equals(
+                                parser.getAttributeValue(null, METADATA.JOURNAL_ID));
+
+                        if (!matchesSnapshot)
+                            return false;
+                    }
+                    // Each record replaces the one before, empty ones are
+                    // removed
+                    else if (tagName.equalsIgnoreCase(METADATA.METADATA) && matchesSnapshot) {
+                        final String key = parser.getAttributeValue(null, METADATA.EPISODE_URL);
+                        final EpisodeMetadata metadata = readMetadata(parser);
+
+                        if (metadata.hasData())
+                            result.put(key, metadata);
+                        else
+                            result.remove(key);
+                    }
                 }
+
+                eventType = parser.next();
+            }
+        } finally {
+            close(fileStream, parser);
         }
 
-        return result;
+        return matchesSnapshot;
     }
 
-    @Override
-    protected void onPostExecute(Map<String, EpisodeMetadata> result) {
-        if (listener != null)
-            listener.onEpisodeMetadataLoaded(result);
+    private InputStream getBytes(String text) throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(text.getBytes(StoreFileTask.FILE_ENCODING));
+    }
+
+    private void close(InputStream fileStream, XmlPullParser parser) {
+        // Make sure we close the file stream
+        if (fileStream != null)
+            try {
+                fileStream.close();
+            } catch (IOException e) {
+                // Nothing we can do here
+            }
+
+        if (parser != null)
+            ParserUtils.releaseParser(parser);
     }
 
     private EpisodeMetadata readMetadata(XmlPullParser parser)
@@ -152,7 +307,7 @@ public class LoadEpisodeMetadataTask extends
                 if (tagName.equalsIgnoreCase(METADATA.EPISODE_NAME))
                     result.episodeName = parser.nextText();
                 else if (tagName.equalsIgnoreCase(METADATA.EPISODE_DATE))
-                    result.episodePubDate = new Date(Long.parseLong(parser.nextText()));
+                    result.episodePubDate = Long.parseLong(parser.nextText());
                 else if (tagName.equalsIgnoreCase(METADATA.EPISODE_DESCRIPTION))
                     result.episodeDescription = parser.nextText();
                 else if (tagName.equalsIgnoreCase(METADATA.PODCAST_NAME))
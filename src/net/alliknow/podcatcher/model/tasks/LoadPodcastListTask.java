@@ -22,9 +22,9 @@ import static net.alliknow.podcatcher.model.PodcastManager.OPML_FILENAME;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
-import android.text.Html;
 
 import net.alliknow.podcatcher.listeners.OnLoadPodcastListListener;
+import net.alliknow.podcatcher.model.ParserUtils;
 import net.alliknow.podcatcher.model.PodcastManager;
 import net.alliknow.podcatcher.model.tags.OPML;
 import net.alliknow.podcatcher.model.types.Podcast;
@@ -32,7 +32,6 @@ import net.alliknow.podcatcher.model.types.Progress;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -90,16 +89,14 @@ public class LoadPodcastListTask extends AsyncTask<Void, Progress, List<Podcast>
         // Create resulting data structure and file stream
         final List<Podcast> result = new ArrayList<>();
         InputStream fileStream = null;
+        XmlPullParser parser = null;
 
         try {
             // 1. Open the OPML file
             fileStream = context.getContentResolver().openInputStream(importFile);
 
-            // 2. Build parser
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            // Create the parser to use
-            XmlPullParser parser = factory.newPullParser();
+            // 2. Get the parser to use
+            parser = ParserUtils.getParser(true);
 
             // 3. Parse the OPML file
             parser.setInput(fileStream, PodcastManager.OPML_FILE_ENCODING);
@@ -138,6 +135,9 @@ public class LoadPodcastListTask extends AsyncTask<Void, Progress, List<Podcast>
                 } catch (IOException e) {
                     // Nothing we can do here
                 }
+
+            if (parser != null)
+                ParserUtils.releaseParser(parser);
         }
 
         return result;
@@ -172,18 +172,40 @@ public class LoadPodcastListTask extends AsyncTask<Void, Progress, List<Podcast>
             parser.require(XmlPullParser.START_TAG, "", OPML.OUTLINE);
             // Get the podcast name
             String name = parser.getAttributeValue("", OPML.TEXT);
+            // Create the podcast, its name is decoded when needed
+            result = new Podcast(null, parser.getAttributeValue("", OPML.XMLURL));
             // Make sure podcast name looks good
-            if (name.equals("null"))
-                name = null;
-            else
-                name = Html.fromHtml(name).toString();
-
-            // Create the podcast
-            result = new Podcast(name, parser.getAttributeValue("", OPML.XMLURL));
+            if (!name.equals("null"))
+                result.setHtmlName(name);
 
             // Set authorization information
             result.setUsername(parser.getAttributeValue("", OPML.EXTRA_USER));
             result.setPassword(parser.getAttributeValue("", OPML.EXTRA_PASS));
+            // Set http cache validators
+            result.setCacheValidators(parser.getAttributeValue("", OPML.EXTRA_ETAG),
+                    parser.getAttributeValue("", OPML.EXTRA_LAST_MODIFIED));
+            // Set the publishing cadence learned earlier
+            try {
+                final String interval = parser.getAttributeValue("", OPML.EXTRA_INTERVAL);
+                final String newest = parser.getAttributeValue("", OPML.EXTRA_NEWEST_EPISODE);
+
+                if (interval != null && newest != null)
+                    result.setPublishingCadence(Long.parseLong(interval), Long.parseLong(newest));
+            } catch (NumberFormatException nfe) {
+                // Bad values, the cadence will be learned again
+            }
+            // Set the failed loads and the retry back-off
+            try {
+                final String failed = parser.getAttributeValue("", OPML.EXTRA_FAILED_LOADS);
+                final String retryAfter = parser.getAttributeValue("", OPML.EXTRA_RETRY_AFTER);
+
+                if (failed != null && retryAfter != null) {
+                    result.setFailedLoadAttemptCount(Integer.parseInt(failed));
+                    result.setRetryAfter(Long.parseLong(retryAfter));
+                }
+            } catch (NumberFormatException nfe) {
+                // Bad values, we will simply retry
+            }
         } catch (XmlPullParserException e) {
             /* Bad outline, skip */
         } catch (IOException e) {
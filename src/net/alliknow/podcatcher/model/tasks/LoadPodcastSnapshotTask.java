@@ -0,0 +1,87 @@
+/** Copyright 2012-2014 Kevin Hausmann
+ *
+ * This file is part of PodCatcher Deluxe.
+ *
+ * PodCatcher Deluxe is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PodCatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PodCatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.alliknow.podcatcher.model.tasks;
+
+import android.os.AsyncTask;
+
+import net.alliknow.podcatcher.listeners.OnLoadPodcastSnapshotListener;
+import net.alliknow.podcatcher.model.EpisodeManager;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+/**
+ * Restores a podcast's content from its snapshot in the app's private storage.
+ * This is a lot faster than loading the podcast's RSS file and makes the
+ * podcast look like it was loaded at the time the snapshot was taken.
+ * 
+ * @see PodcastSnapshotStore
+ */
+public class LoadPodcastSnapshotTask extends AsyncTask<Podcast, Void, Void> {
+
+    /** Call back */
+    private OnLoadPodcastSnapshotListener listener;
+    /** The store to read from */
+    private PodcastSnapshotStore store;
+
+    /** Podcast currently restoring */
+    private Podcast podcast;
+
+    /**
+     * Create new task.
+     * 
+     * @param listener Callback to be alerted on completion or failure.
+     * @param store The snapshot store to read from.
+     */
+    public LoadPodcastSnapshotTask(OnLoadPodcastSnapshotListener listener,
+            PodcastSnapshotStore store) {
+        this.listener = listener;
+        this.store = store;
+    }
+
+    @Override
+    protected Void doInBackground(Podcast... podcasts) {
+        this.podcast = podcasts[0];
+
+        try {
+            // 1. Read the snapshot, the store takes care of missing and broken
+            // files
+            if (!store.read(podcast))
+                cancel(true);
+            // 2. Same as when actually loading the podcast, we need to make
+            // sure the episode metadata is available before we return
+            else
+                EpisodeManager.getInstance().blockUntilEpisodeMetadataIsLoaded();
+        } catch (Throwable throwable) {
+            cancel(true);
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void onPostExecute(Void nothing) {
+        if (listener != null)
+            listener.onPodcastSnapshotLoaded(podcast);
+    }
+
+    @Override
+    protected void onCancelled(Void nothing) {
+        if (listener != null)
+            listener.onPodcastSnapshotLoadFailed(podcast);
+    }
+}
@@ -24,6 +24,8 @@ import static net.alliknow.podcatcher.model.tags.METADATA.EPISODE_NAME;
 import static net.alliknow.podcatcher.model.tags.METADATA.EPISODE_RESUME_AT;
 import static net.alliknow.podcatcher.model.tags.METADATA.EPISODE_STATE;
 import static net.alliknow.podcatcher.model.tags.METADATA.EPISODE_URL;
+import static net.alliknow.podcatcher.model.tags.METADATA.JOURNAL;
+import static net.alliknow.podcatcher.model.tags.METADATA.JOURNAL_ID;
 import static net.alliknow.podcatcher.model.tags.METADATA.LOCAL_FILE_PATH;
 import static net.alliknow.podcatcher.model.tags.METADATA.METADATA;
 import static net.alliknow.podcatcher.model.tags.METADATA.PLAYLIST_POSITION;
@@ -34,59 +36,101 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import net.alliknow.podcatcher.listeners.OnStoreEpisodeMetadataListener;
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.EpisodeManager;
+import net.alliknow.podcatcher.model.EpisodeMetadataSnapshot;
 import net.alliknow.podcatcher.model.types.EpisodeMetadata;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
 
 /**
- * Stores the episode metadata information to the file system.
+ * Stores the episode metadata information to the file system. Usually, only
+ * the records changed are appended to the metadata journal, which
+ * {@link LoadEpisodeMetadataTask} replays on top of the last snapshot. Once the
+ * journal grows larger than the snapshot, all metadata is compacted into a new
+ * binary snapshot instead (see {@link EpisodeMetadataSnapshot}). The journal
+ * records are XML, so they can be appended to and the task can also export all
+ * metadata to XML for debugging.
  */
-public class StoreEpisodeMetadataTask extends StoreFileTask<Map<String, EpisodeMetadata>> {
+public class StoreEpisodeMetadataTask extends StoreFileTask<Set<String>> {
+
+    /** The file name used while writing a new snapshot or journal */
+    private static final String TEMP_FILENAME = EpisodeManager.METADATA_SNAPSHOT_FILENAME
+            + ".tmp";
+    /** The buffer size used for writing the snapshot */
+    private static final int BUFFER_SIZE = 16 * 1024;
+    /** The journal is never compacted before it reaches this many bytes */
+    private static final long MIN_JOURNAL_LENGTH_TO_COMPACT = 64 * 1024;
 
     /** Our context */
     protected Context context;
     /** The call-back */
     protected OnStoreEpisodeMetadataListener listener;
+    /** The metadata to store (needs to be thread-safe) */
+    protected Map<String, EpisodeMetadata> metadata;
 
     /** The exception that might have been occurred */
     protected Exception exception;
 
+    /** The file stream the writer is using */
+    private FileOutputStream fileStream;
+    /** Whether to write a new snapshot in any case */
+    private boolean forceCompact = false;
+
     /**
-     * Create a new persistence task.
+     * Create a new persistence task. Run it with the set of keys to store the
+     * metadata records for.
      * 
      * @param context Context to use for file writing.
      * @param listener Call-back to alert on completion or failure.
+     * @param metadata The complete metadata, since the task might decide to
+     *            compact it into a new snapshot. This is read from a background
+     *            thread and thus needs to be thread-safe.
      */
-    public StoreEpisodeMetadataTask(Context context, OnStoreEpisodeMetadataListener listener) {
+    public StoreEpisodeMetadataTask(Context context, OnStoreEpisodeMetadataListener listener,
+            Map<String, EpisodeMetadata> metadata) {
         this.context = context;
         this.listener = listener;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @param force Whether the task should write a new snapshot instead of
+     *            appending to the journal, no matter how large it is. Use
+     *            this after a store failed, since the journal's tail might be
+     *            broken then and records appended to it would be lost on
+     *            replay.
+     */
+    public void setForceCompact(boolean force) {
+        this.forceCompact = force;
     }
 
     @Override
-    protected Void doInBackground(Map<String, EpisodeMetadata>... params) {
+    protected Void doInBackground(Set<String>... params) {
         try {
-            // 1. Do house keeping and remove all metadata instances without
-            // data
-            cleanMetadata(params[0]);
-
-            // 2. Open the file and get a writer
-            OutputStream fileStream =
-                    context.openFileOutput(EpisodeManager.METADATA_FILENAME, Context.MODE_PRIVATE);
-            writer = new BufferedWriter(new OutputStreamWriter(fileStream, FILE_ENCODING));
-
-            // 3. Write new file content
-            writeHeader();
-            for (Entry<String, EpisodeMetadata> entry : params[0].entrySet())
-                writeRecord(entry.getKey(), entry.getValue());
-            writeFooter();
+            final File journal = context.getFileStreamPath(EpisodeManager.METADATA_JOURNAL_FILENAME);
+            final File snapshot = context.getFileStreamPath(
+                    EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+
+            // Without a journal (e.g. after an update), there is nothing to
+            // append to. Otherwise, only compact once the journal is larger
+            // than the snapshot, so that the cost of writing all metadata is
+            // spread over many small writes.
+            if (forceCompact || !journal.exists() || journal.length() >
+                    Math.max(MIN_JOURNAL_LENGTH_TO_COMPACT, snapshot.length()))
+                compact();
+            else
+                append(params[0]);
         } catch (Exception ex) {
             this.exception = ex;
 
@@ -116,21 +160,115 @@ public class StoreEpisodeMetadataTask extends StoreFileTask<Map<String, EpisodeM
             listener.onEpisodeMetadataStoreFailed(exception);
     }
 
+    /**
+     * Write all metadata records to a new snapshot and start a new, empty
+     * journal. Both files are written to a temporary file first and then
+     * renamed, so a crash leaves either the old or the new version in place.
+     * The snapshot refers to its journal by id, so an old journal left behind
+     * is never replayed on top of a newer snapshot.
+     * 
+     * @throws IOException If writing fails.
+     */
+    void compact() throws IOException {
+        final String journalId = UUID.randomUUID().toString();
+
+        // 1. Write the snapshot, leaving out records without data
+        fileStream = context.openFileOutput(TEMP_FILENAME, Context.MODE_PRIVATE);
+        try {
+            EpisodeMetadataSnapshot.write(new BufferedOutputStream(fileStream, BUFFER_SIZE),
+                    metadata, journalId);
+            // Make sure the content is on disk before the file is put in place
+            fileStream.getFD().sync();
+        } finally {
+            fileStream.close();
+        }
+        rename(EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+
+        // 2. Start the new journal
+        open(TEMP_FILENAME, Context.MODE_PRIVATE);
+        writeLine(0, "<" + JOURNAL + " " + JOURNAL_ID + "=\"" + journalId + "\"/>");
+        closeAndRename(EpisodeManager.METADATA_JOURNAL_FILENAME);
+    }
+
+    /**
+     * Write all metadata records to the given file in the XML format used
+     * before the binary snapshot. This is meant for debugging, the file is
+     * not read by the app, unless put in place of the old metadata file.
+     * Call this off the main thread.
+     * 
+     * @param file The file to write to.
+     * @throws IOException If writing fails.
+     */
+    public void exportXml(File file) throws IOException {
+        fileStream = new FileOutputStream(file);
+        writer = new BufferedWriter(new OutputStreamWriter(fileStream, FILE_ENCODING));
+
+        try {
+            writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
+            writeLine(0, "<xml dateModified=\"" + new Date().getTime() + "\">");
+            for (Entry<String, EpisodeMetadata> entry : metadata.entrySet())
+                if (entry.getValue().hasData())
+                    writeRecord(entry.getKey(), entry.getValue());
+            writeLine(0, "</xml>");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Append the current state of the given metadata records to the journal.
+     * Records without data are written empty, this removes them on replay.
+     * 
+     * @param keys The keys of the records to write.
+     * @throws IOException If writing fails.
+     */
+    private void append(Set<String> keys) throws IOException {
+        open(EpisodeManager.METADATA_JOURNAL_FILENAME, Context.MODE_APPEND);
+        for (String key : keys)
+            writeRecord(key, metadata.get(key));
+
+        writer.flush();
+        fileStream.getFD().sync();
+        writer.close();
+    }
+
+    private void open(String filename, int mode) throws IOException {
+        fileStream = context.openFileOutput(filename, mode);
+        writer = new BufferedWriter(new OutputStreamWriter(fileStream, FILE_ENCODING));
+    }
+
+    private void closeAndRename(String filename) throws IOException {
+        // Make sure the content is on disk before the file is put in place
+        writer.flush();
+        fileStream.getFD().sync();
+        writer.close();
+
+        rename(filename);
+    }
+
+    private void rename(String filename) throws IOException {
+        if (!context.getFileStreamPath(TEMP_FILENAME).renameTo(
+                context.getFileStreamPath(filename)))
+            throw new IOException("Cannot rename " + TEMP_FILENAME + " to " + filename);
+    }
+
     private void writeRecord(String key, EpisodeMetadata value) throws IOException {
         writeLine(1, "<" + METADATA + " " + EPISODE_URL + "=\"" + TextUtils.htmlEncode(key) + "\">");
 
-        writeData(value.episodeName, EPISODE_NAME);
-        if (value.episodePubDate != null)
-            writeData(value.episodePubDate.getTime(), EPISODE_DATE);
-        writeData(value.episodeDescription, EPISODE_DESCRIPTION);
-        writeData(value.podcastName, PODCAST_NAME);
-        writeData(value.podcastUrl, PODCAST_URL);
-        writeData(value.downloadId, DOWNLOAD_ID);
-        writeData(value.filePath, LOCAL_FILE_PATH);
-        writeData(value.resumeAt, EPISODE_RESUME_AT);
-        if (value.isOld != null && value.isOld)
-            writeData("true", EPISODE_STATE);
-        writeData(value.playlistPosition, PLAYLIST_POSITION);
+        if (value != null && value.hasData()) {
+            writeData(value.episodeName, EPISODE_NAME);
+            if (value.episodePubDate != DateParser.INVALID)
+                writeData(value.episodePubDate, EPISODE_DATE);
+            writeData(value.episodeDescription, EPISODE_DESCRIPTION);
+            writeData(value.podcastName, PODCAST_NAME);
+            writeData(value.podcastUrl, PODCAST_URL);
+            writeData(value.downloadId, DOWNLOAD_ID);
+            writeData(value.filePath, LOCAL_FILE_PATH);
+            writeData(value.resumeAt, EPISODE_RESUME_AT);
+            if (value.isOld != null && value.isOld)
+                writeData("true", EPISODE_STATE);
+            writeData(value.playlistPosition, PLAYLIST_POSITION);
+        }
 
         writeLine(1, "</" + METADATA + ">");
     }
@@ -151,24 +289,4 @@ public class StoreEpisodeMetadataTask extends StoreFileTask<Map<String, EpisodeM
         if (data != null)
             writeData(Long.valueOf(data), tag);
     }
-
-    private void writeHeader() throws IOException {
-        writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
-        writeLine(0, "<xml dateModified=\"" + new Date().getTime() + "\">");
-    }
-
-    private void writeFooter() throws IOException {
-        writeLine(0, "</xml>");
-    }
-
-    private void cleanMetadata(Map<String, EpisodeMetadata> metadata) {
-        Iterator<Entry<String, EpisodeMetadata>> iterator = metadata.entrySet().iterator();
-
-        while (iterator.hasNext()) {
-            Entry<String, EpisodeMetadata> entry = iterator.next();
-
-            if (!entry.getValue().hasData())
-                iterator.remove();
-        }
-    }
 }
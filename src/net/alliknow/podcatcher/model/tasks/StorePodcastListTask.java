@@ -61,6 +61,11 @@ public class StorePodcastListTask extends StoreFileTask<List<Podcast>> {
      * to the resulting file.
      */
     protected boolean writeAuthorization = false;
+    /**
+     * Flag to indicate whether the task should write podcast load information
+     * (such as http cache validators) to the resulting file.
+     */
+    protected boolean writeLoadInfo = false;
     /** The exception that might have been occurred */
     protected Exception exception;
 
@@ -103,6 +108,18 @@ public class StorePodcastListTask extends StoreFileTask<List<Podcast>> {
         this.writeAuthorization = write;
     }
 
+    /**
+     * Sets the write load info flag. If set to <code>true</code>, the resulting
+     * OPML file will contain extra information on the podcasts' load state,
+     * e.g. the http cache validators. The default is <code>false</code>, since
+     * this is only useful to the app itself.
+     * 
+     * @param write Whether load information should be written to output.
+     */
+    public void setWriteLoadInfo(boolean write) {
+        this.writeLoadInfo = write;
+    }
+
     @Override
     protected Void doInBackground(List<Podcast>... params) {
         this.podcastList = params[0];
@@ -177,6 +194,33 @@ public class StorePodcastListTask extends StoreFileTask<List<Podcast>> {
                         OPML.EXTRA_PASS, htmlEncode(podcast.getPassword()));
             }
 
+            if (writeLoadInfo && podcast.getEtag() != null) {
+                opmlString = opmlString.substring(0, opmlString.length() - 3);
+                opmlString = String.format("%s %s=\"%s\" />", opmlString,
+                        OPML.EXTRA_ETAG, htmlEncode(podcast.getEtag()));
+            }
+
+            if (writeLoadInfo && podcast.getLastModified() != null) {
+                opmlString = opmlString.substring(0, opmlString.length() - 3);
+                opmlString = String.format("%s %s=\"%s\" />", opmlString,
+                        OPML.EXTRA_LAST_MODIFIED, htmlEncode(podcast.getLastModified()));
+            }
+
+            if (writeLoadInfo && podcast.getPublishingInterval() > 0) {
+                opmlString = opmlString.substring(0, opmlString.length() - 3);
+                opmlString = String.format("%s %s=\"%s\" %s=\"%s\" />", opmlString,
+                        OPML.EXTRA_INTERVAL, String.valueOf(podcast.getPublishingInterval()),
+                        OPML.EXTRA_NEWEST_EPISODE, String.valueOf(podcast.getNewestEpisodeDate()));
+            }
+
+            if (writeLoadInfo && podcast.getFailedLoadAttemptCount() > 0) {
+                opmlString = opmlString.substring(0, opmlString.length() - 3);
+                opmlString = String.format("%s %s=\"%s\" %s=\"%s\" />", opmlString,
+                        OPML.EXTRA_FAILED_LOADS,
+                        String.valueOf(podcast.getFailedLoadAttemptCount()),
+                        OPML.EXTRA_RETRY_AFTER, String.valueOf(podcast.getRetryAfter()));
+            }
+
             writeLine(2, opmlString);
         }
     }
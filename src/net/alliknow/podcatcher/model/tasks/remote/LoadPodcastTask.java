@@ -21,15 +21,17 @@ import android.util.Log;
 
 import net.alliknow.podcatcher.listeners.OnLoadPodcastListener;
 import net.alliknow.podcatcher.model.EpisodeManager;
+import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore;
 import net.alliknow.podcatcher.model.types.Podcast;
 import net.alliknow.podcatcher.model.types.Progress;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
 
 /**
@@ -49,6 +51,23 @@ import java.net.URL;
  * {@link OnLoadPodcastListener#onPodcastLoadFailed(Podcast, PodcastLoadError)}
  * will be called with the code set to {@link PodcastLoadError#AUTH_REQUIRED}.
  * </p>
+ * <p>
+ * <b>Conditional load:</b> If the podcast has been loaded before, the task will
+ * send its {@link Podcast#getEtag()} and {@link Podcast#getLastModified()}
+ * values with the request. If the server reports that the feed has not been
+ * modified, parsing is skipped and the load counts as successful.
+ * </p>
+ * <p>
+ * <b>Snapshots:</b> If a {@link PodcastSnapshotStore} is set, the task will
+ * update the podcast's snapshot after the RSS file has been parsed.
+ * </p>
+ * <p>
+ * <b>Parse stage:</b> If a {@link ParseStage} is set, the task enters the
+ * stage once the server responded and then parses the RSS file while it is
+ * still loading. The task pauses the stage while it waits for more data from
+ * the server and tells it once the file is loaded completely. This allows the
+ * executor to limit the number of concurrent parses and downloads.
+ * </p>
  */
 public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
@@ -95,6 +114,51 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
         NOT_PARSEABLE
     }
 
+    /**
+     * The stage the task enters once the server responded with the RSS file.
+     * The executor running the task can use this to limit the number of
+     * concurrent parses and downloads. All methods are called on the task's
+     * background thread.
+     */
+    public static interface ParseStage {
+
+        /**
+         * Enter the parse stage. This blocks until the task may start parsing.
+         * 
+         * @throws InterruptedException If interrupted while waiting, the task
+         *             will then not parse the file.
+         */
+        public void enter() throws InterruptedException;
+
+        /**
+         * Called while in the stage when the parser needs more data and the
+         * task is about to wait for the server.
+         */
+        public void pause();
+
+        /**
+         * Called while in the stage when the data the parser waited for
+         * arrived. This blocks until the task may continue parsing.
+         * 
+         * @throws InterruptedException If interrupted while waiting, the task
+         *             will then stop parsing the file.
+         */
+        public void resume() throws InterruptedException;
+
+        /**
+         * Called once the RSS file is loaded completely, the task will not use
+         * the network anymore. Might not be called at all if the parser does
+         * not need the whole file.
+         */
+        public void onDownloadCompleted();
+
+        /**
+         * Leave the parse stage, called once parsing is done. This is also
+         * called if {@link #enter()} or {@link #resume()} were interrupted.
+         */
+        public void leave();
+    }
+
     /** Call back */
     private OnLoadPodcastListener listener;
 
@@ -105,6 +169,14 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
     /** Flag whether we strip out explicit episodes */
     private boolean blockExplicit = false;
+    /** The store to write the podcast's snapshot to */
+    private PodcastSnapshotStore snapshotStore;
+    /** The stage to enter for parsing */
+    private ParseStage parseStage;
+    /** Whether we are in the parse stage */
+    private boolean inParseStage = false;
+    /** Whether the validators or the publishing cadence changed */
+    private boolean loadInfoChanged = false;
 
     /**
      * Create new task.
@@ -129,9 +201,45 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
         this.blockExplicit = block;
     }
 
+    /**
+     * @param store The store to write the podcast's snapshot to once it is
+     *            parsed, give <code>null</code> to write no snapshot.
+     */
+    public void setSnapshotStore(PodcastSnapshotStore store) {
+        this.snapshotStore = store;
+    }
+
+    /**
+     * @param stage The stage to enter before parsing the RSS file, give
+     *            <code>null</code> to parse right away.
+     */
+    public void setParseStage(ParseStage stage) {
+        this.parseStage = stage;
+    }
+
+    /**
+     * @return The location the podcast's feed has permanently moved to
+     *         according to the server, or <code>null</code> if it did not
+     *         move. This is only available after the task has completed.
+     */
+    public String getPermanentRedirect() {
+        return permanentRedirect;
+    }
+
+    /**
+     * @return Whether the load changed the podcast's http cache validators or
+     *         its publishing cadence, i.e. the information persisted with the
+     *         podcast list. This is only available after the task has
+     *         completed.
+     */
+    public boolean hasLoadInfoChanged() {
+        return loadInfoChanged;
+    }
+
     @Override
     protected Void doInBackground(Podcast... podcasts) {
         this.podcast = podcasts[0];
+        InputStream feedStream = null;
 
         try {
             // 1. Load the file from the Internet
@@ -139,23 +247,58 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
             // Set auth
             this.authorization = podcast.getAuthorization();
+            // Only ask the server to skip unchanged content if we have it
+            if (podcast.isLoaded()) {
+                this.ifNoneMatch = podcast.getEtag();
+                this.ifModifiedSince = podcast.getLastModified();
+            }
             // ... and go get the file
-            byte[] podcastRssFile = loadFile(new URL(podcast.getUrl()));
+            feedStream = loadStream(new URL(podcast.getUrl()));
 
             if (isCancelled())
                 return null;
-            else
-                publishProgress(Progress.PARSE);
+            // The feed did not change, so there is no need to parse it again
+            else if (notModified) {
+                podcast.markNotModified();
+                // The episode metadata needs to be available, see below
+                EpisodeManager.getInstance().blockUntilEpisodeMetadataIsLoaded();
 
-            // 2. Create the parser to use
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            XmlPullParser parser = factory.newPullParser();
-            parser.setInput(new ByteArrayInputStream(podcastRssFile), null);
+                return null;
+            }
 
-            // 3. Parse as podcast content
-            if (!isCancelled())
-                podcast.parse(parser);
+            // 2. Wait for our turn to parse, the parser reads straight from
+            // the remote stream, so loading and parsing happen at the same
+            // time
+            try {
+                if (parseStage != null) {
+                    inParseStage = true;
+                    parseStage.enter();
+                }
+
+                // 3. Parse as podcast content and keep the validators, we
+                // only need to look at the new episodes in the feed here
+                if (!isCancelled()) {
+                    final XmlPullParser parser = ParserUtils.getParser(true);
+                    final long interval = podcast.getPublishingInterval();
+                    final long newestEpisodeDate = podcast.getNewestEpisodeDate();
+
+                    try {
+                        parser.setInput(feedStream, null);
+
+                        podcast.parse(parser, true);
+                        loadInfoChanged = podcast.setCacheValidators(etag, lastModified)
+                                || interval != podcast.getPublishingInterval()
+                                || newestEpisodeDate != podcast.getNewestEpisodeDate();
+                    } finally {
+                        ParserUtils.releaseParser(parser);
+                    }
+                }
+            } finally {
+                if (inParseStage) {
+                    inParseStage = false;
+                    parseStage.leave();
+                }
+            }
 
             // 4. Clean out explicit episodes
             if (!isCancelled() && blockExplicit) {
@@ -169,7 +312,17 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
                 }
             }
 
-            // 5. We need to wait here and make sure the episode metadata is
+            // 5. Keep a snapshot of the content, so it is available right
+            // away the next time the app starts
+            if (!isCancelled() && snapshotStore != null)
+                try {
+                    snapshotStore.write(podcast);
+                } catch (IOException ioe) {
+                    // An outdated snapshot would not match the validators
+                    snapshotStore.delete(podcast);
+                }
+
+            // 6. We need to wait here and make sure the episode metadata is
             // available before we return
             EpisodeManager.getInstance().blockUntilEpisodeMetadataIsLoaded();
         } catch (XmlPullParserException xppe) {
@@ -177,21 +330,56 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
             cancel(true);
         } catch (IOException ioe) {
-            // This will also catch mal-formed URLs
-            errorCode = PodcastLoadError.NOT_REACHABLE;
+            // This will also catch mal-formed URLs, reads failing because the
+            // task was cancelled are not the server's fault though
+            if (!isCancelled())
+                errorCode = PodcastLoadError.NOT_REACHABLE;
 
+            cancel(true);
+        } catch (InterruptedException ie) {
+            // Cancelled while waiting to parse
             cancel(true);
         } catch (Throwable throwable) {
             Log.d(TAG, "Load failed for podcast \"" + podcast + "\"", throwable);
 
             cancel(true);
         } finally {
+            // Make sure we close the remote stream
+            if (feedStream != null)
+                try {
+                    feedStream.close();
+                } catch (IOException e) {
+                    // Nothing we can do here
+                }
+
             publishProgress(Progress.DONE);
         }
 
         return null;
     }
 
+    @Override
+    protected void onRemoteReadStarted() {
+        if (inParseStage)
+            parseStage.pause();
+    }
+
+    @Override
+    protected void onRemoteReadFinished() throws InterruptedIOException {
+        if (inParseStage)
+            try {
+                parseStage.resume();
+            } catch (InterruptedException ie) {
+                throw new InterruptedIOException("Interrupted while waiting to parse");
+            }
+    }
+
+    @Override
+    protected void onRemoteFileLoaded() {
+        if (parseStage != null)
+            parseStage.onDownloadCompleted();
+    }
+
     @Override
     protected void onProgressUpdate(Progress... progress) {
         if (listener != null)
@@ -17,20 +17,30 @@
 
 package net.alliknow.podcatcher.model.tasks.remote;
 
+import static java.net.HttpURLConnection.HTTP_MOVED_PERM;
+import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_SEE_OTHER;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 import static net.alliknow.podcatcher.Podcatcher.AUTHORIZATION_KEY;
 import static net.alliknow.podcatcher.Podcatcher.USER_AGENT_KEY;
 import static net.alliknow.podcatcher.Podcatcher.USER_AGENT_VALUE;
 
 import android.os.AsyncTask;
+import android.os.SystemClock;
 
 import net.alliknow.podcatcher.model.types.Progress;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Abstract super class for file download tasks.
@@ -47,6 +57,24 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
     /** The read timeout */
     protected static final int READ_TIMEOUT = 60000;
 
+    /** The maximum number of redirects we follow */
+    private static final int MAX_REDIRECTS = 5;
+    /** The http status code for temporary redirects */
+    private static final int HTTP_TEMPORARY_REDIRECT = 307;
+    /** The http status code for permanent redirects (RFC 7538) */
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
+
+    /** The size of the buffers used to read from the remote */
+    private static final int BUFFER_SIZE = 32 * 1024;
+    /** The maximum number of buffers kept for re-use */
+    private static final int BUFFER_POOL_SIZE = 4;
+    /** The buffers available for re-use, shared by all tasks */
+    private static final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
+    /** The maximum size we trust the remote's content length for */
+    private static final int MAX_SIZE_HINT = 16 * 1024 * 1024;
+    /** The minimum amount of milliseconds between two progress updates */
+    private static final long PROGRESS_INTERVAL = 100;
+
     /** The use caches flag set to the http connection before it is opened. */
     protected boolean useCaches;
 
@@ -60,6 +88,25 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
     /** The flag to indicate that authorization is/was required */
     protected boolean needsAuthorization = false;
 
+    /** The entity tag to send as a conditional request header */
+    protected String ifNoneMatch;
+    /** The last modified date to send as a conditional request header */
+    protected String ifModifiedSince;
+    /** The flag to indicate that the remote reported no modification */
+    protected boolean notModified = false;
+    /** The entity tag the remote file was served with */
+    protected String etag;
+    /** The last modified date the remote file was served with */
+    protected String lastModified;
+    /**
+     * The location the remote file has permanently moved to, only set if all
+     * redirects followed were permanent
+     */
+    protected String permanentRedirect;
+
+    /** The point in time we last published load progress */
+    private long lastProgressTime = 0;
+
     /**
      * Set a "max-stale" cache control directive when downloading the file. The
      * default is a negative number, turning off the directive. If not negative,
@@ -85,55 +132,40 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
 
     /**
      * Download the file and return it as a byte array. Will feed
-     * {@link #publishProgress(Object...)}.
+     * {@link #publishProgress(Object...)}. If {@link #ifNoneMatch} or
+     * {@link #ifModifiedSince} are set, the request is made conditional and
+     * the {@link #notModified} flag will be set if the remote reports that the
+     * file did not change. The validators the file was served with are made
+     * available as {@link #etag} and {@link #lastModified}. Redirects are
+     * followed and {@link #permanentRedirect} is set if they are permanent.
      * 
      * @param remote URL connection to load from.
-     * @return The file content.
+     * @return The file content, or <code>null</code> if cancelled or not
+     *         modified.
      * @throws IOException If something goes wrong.
      */
     protected byte[] loadFile(URL remote) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) remote.openConnection();
-        connection.setConnectTimeout(CONNECT_TIMEOUT);
-        connection.setReadTimeout(READ_TIMEOUT);
-        // Set whether we use the http cache
-        connection.setUseCaches(useCaches);
-        // We set a custom user agent here because some servers (e.g. ZDF.de)
-        // redirect connections from mobile devices to servers where the content
-        // we are looking for might not be available.
-        connection.setRequestProperty(USER_AGENT_KEY, USER_AGENT_VALUE);
-        // Set cache control directive
-        if (maxStale >= 0)
-            connection.addRequestProperty("Cache-Control", "max-stale=" + maxStale);
-        // Allow for password protected feeds
-        if (authorization != null)
-            connection.setRequestProperty(AUTHORIZATION_KEY, authorization);
+        final HttpURLConnection connection = openConnection(remote);
 
         BufferedInputStream bufferedRemoteStream = null;
-        ByteArrayOutputStream result = null;
+        SizedByteArrayOutputStream result = null;
+        byte[] buffer = null;
 
         try {
-            // 1. Open stream and check whether we know its length
-            bufferedRemoteStream = new BufferedInputStream(connection.getInputStream());
-            final int contentLength = connection.getContentLength();
-            // Check whether we should abort load since we have a load limit set
-            // and the content length is higher.
-            if (loadLimit >= 0 && contentLength >= 0 && contentLength > loadLimit)
-                throw new IOException("Load limit exceeded (content length reported by remote is "
-                        + contentLength + " bytes, limit was " + loadLimit + " bytes)!");
-            // Check whether we could calculate the percentage of completion,
-            // this only works if a content length is given and the content is
-            // not gzipped
-            final boolean isZippedResponse = connection.getContentEncoding() != null
-                    && connection.getContentEncoding().equals("gzip");
-            final boolean sendLoadProgress = contentLength > 0 && !isZippedResponse;
+            // 1. Check the response and whether we know its length
+            final int contentLength = checkResponse(connection);
+            if (notModified)
+                return null;
 
             // showResponseHeaderDetails(connection);
 
-            // 2. Create the byte buffer to write to
-            result = new ByteArrayOutputStream();
+            // 2. Open stream and create the byte buffer to write to, this is
+            // sized to fit if the remote tells us the length
+            bufferedRemoteStream = new BufferedInputStream(connection.getInputStream());
+            result = new SizedByteArrayOutputStream(connection.getContentLength());
             publishProgress(Progress.LOAD);
 
-            byte[] buffer = new byte[1024];
+            buffer = acquireBuffer();
             int bytesRead = 0;
             int totalBytes = 0;
 
@@ -149,16 +181,15 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
 
                 result.write(buffer, 0, bytesRead);
 
-                if (sendLoadProgress)
-                    publishProgress(new Progress(totalBytes, contentLength));
+                if (contentLength > 0)
+                    publishLoadProgress(totalBytes, contentLength);
             }
 
             // 4. Return result as a byte array
-            return result.toByteArray();
+            return result.getBytes();
         } catch (IOException ioe) {
             // Make sure sub-classes can react if auth is needed
-            if (connection.getResponseCode() == HTTP_UNAUTHORIZED)
-                needsAuthorization = true;
+            checkForAuthorizationRequired(connection);
 
             throw ioe;
         } finally {
@@ -179,10 +210,381 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
                     // Nothing we can do here
                 }
 
+            // Give the buffer back
+            if (buffer != null)
+                releaseBuffer(buffer);
+
             // Disconnect
             connection.disconnect();
 
             // reportCacheStats();
         }
     }
+
+    /**
+     * Open the remote file as a stream to be consumed directly by the caller.
+     * Other than {@link #loadFile(URL)}, this will not buffer the complete file
+     * in memory. Reading from the stream feeds
+     * {@link #publishProgress(Object...)}, respects the load limit and fails
+     * with an {@link IOException} once the task is cancelled. Conditional
+     * requests work as described for {@link #loadFile(URL)}. Reads that need
+     * to go to the network are announced via {@link #onRemoteReadStarted()}
+     * and {@link #onRemoteReadFinished()}, the end of the file via
+     * {@link #onRemoteFileLoaded()}.
+     * 
+     * @param remote URL connection to load from.
+     * @return The stream to read the file content from, or <code>null</code>
+     *         if not modified. Callers need to close the stream when done,
+     *         this will also disconnect from the remote.
+     * @throws IOException If something goes wrong.
+     */
+    protected InputStream loadStream(URL remote) throws IOException {
+        final HttpURLConnection connection = openConnection(remote);
+
+        try {
+            // 1. Check the response and whether we know its length
+            final int contentLength = checkResponse(connection);
+            if (notModified) {
+                connection.disconnect();
+
+                return null;
+            }
+
+            // 2. Open the stream and hand it out
+            publishProgress(Progress.LOAD);
+
+            return new RemoteInputStream(connection, contentLength);
+        } catch (IOException ioe) {
+            // Make sure sub-classes can react if auth is needed
+            checkForAuthorizationRequired(connection);
+            connection.disconnect();
+
+            throw ioe;
+        }
+    }
+
+    /**
+     * Called on the background thread when the stream handed out by
+     * {@link #loadStream(URL)} is about to wait for more data from the remote.
+     * Sub-classes can give up resources they do not need while waiting. The
+     * default does nothing.
+     */
+    protected void onRemoteReadStarted() {
+        // Nothing to do here
+    }
+
+    /**
+     * Called on the background thread when the stream handed out by
+     * {@link #loadStream(URL)} got more data from the remote (or failed to).
+     * Sub-classes can block here until they may continue. The default does
+     * nothing.
+     * 
+     * @throws InterruptedIOException If interrupted while blocking, the read
+     *             fails with this exception then.
+     */
+    protected void onRemoteReadFinished() throws InterruptedIOException {
+        // Nothing to do here
+    }
+
+    /**
+     * Called on the background thread once the stream handed out by
+     * {@link #loadStream(URL)} reached the end of the remote file. There might
+     * still be data left in the stream's buffer. The default does nothing.
+     */
+    protected void onRemoteFileLoaded() {
+        // Nothing to do here
+    }
+
+    /**
+     * Open the connection to the given remote and follow any redirects. Sets
+     * {@link #permanentRedirect} if all redirects followed are permanent and
+     * none of them leaves https for http.
+     * 
+     * @return The connection to the final location, the request has been sent.
+     */
+    private HttpURLConnection openConnection(URL remote) throws IOException {
+        HttpURLConnection connection = openSingleConnection(remote, authorization);
+        boolean allPermanent = true;
+
+        for (int redirects = 0; redirects < MAX_REDIRECTS; redirects++) {
+            final int code = connection.getResponseCode();
+            final String location = connection.getHeaderField("Location");
+
+            // No redirect (left), we are done
+            if (!isRedirect(code) || location == null)
+                break;
+
+            final URL target = new URL(connection.getURL(), location);
+            // A move from https to http is followed, but never learned
+            final boolean downgrade = connection.getURL().getProtocol().equalsIgnoreCase("https")
+                    && target.getProtocol().equalsIgnoreCase("http");
+            allPermanent &= !downgrade
+                    && (code == HTTP_MOVED_PERM || code == HTTP_PERMANENT_REDIRECT);
+            connection.disconnect();
+
+            // We only follow http(s) redirects and do not send credentials to
+            // other hosts
+            if (!target.getProtocol().startsWith("http"))
+                throw new IOException("Redirect to unsupported location " + target);
+            connection = openSingleConnection(target,
+                    target.getHost().equalsIgnoreCase(remote.getHost()) ? authorization : null);
+
+            permanentRedirect = allPermanent ? target.toString() : null;
+        }
+
+        return connection;
+    }
+
+    private HttpURLConnection openSingleConnection(URL remote, String authorization)
+            throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) remote.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        // We follow redirects ourselves to learn about permanent ones
+        connection.setInstanceFollowRedirects(false);
+        // Set whether we use the http cache
+        connection.setUseCaches(useCaches);
+        // We set a custom user agent here because some servers (e.g. ZDF.de)
+        // redirect connections from mobile devices to servers where the content
+        // we are looking for might not be available.
+        connection.setRequestProperty(USER_AGENT_KEY, USER_AGENT_VALUE);
+        // Set cache control directive
+        if (maxStale >= 0)
+            connection.addRequestProperty("Cache-Control", "max-stale=" + maxStale);
+        // Allow for password protected feeds
+        if (authorization != null)
+            connection.setRequestProperty(AUTHORIZATION_KEY, authorization);
+        // Make the request conditional if we have the validators
+        if (ifNoneMatch != null)
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        if (ifModifiedSince != null)
+            connection.setRequestProperty("If-Modified-Since", ifModifiedSince);
+
+        return connection;
+    }
+
+    private static boolean isRedirect(int code) {
+        return code == HTTP_MOVED_PERM || code == HTTP_MOVED_TEMP || code == HTTP_SEE_OTHER
+                || code == HTTP_TEMPORARY_REDIRECT || code == HTTP_PERMANENT_REDIRECT;
+    }
+
+    /**
+     * Check the response code and headers for the given connection. Sets the
+     * {@link #notModified} flag and the validators as needed.
+     * 
+     * @return The total to use for the load progress, or -1 if no progress can
+     *         be calculated.
+     */
+    private int checkResponse(HttpURLConnection connection) throws IOException {
+        // Check whether the remote file changed at all
+        if (connection.getResponseCode() == HTTP_NOT_MODIFIED) {
+            notModified = true;
+
+            return -1;
+        }
+
+        etag = connection.getHeaderField("ETag");
+        lastModified = connection.getHeaderField("Last-Modified");
+
+        final int contentLength = connection.getContentLength();
+        // Check whether we should abort load since we have a load limit set
+        // and the content length is higher.
+        if (loadLimit >= 0 && contentLength >= 0 && contentLength > loadLimit)
+            throw new IOException("Load limit exceeded (content length reported by remote is "
+                    + contentLength + " bytes, limit was " + loadLimit + " bytes)!");
+        // Check whether we could calculate the percentage of completion,
+        // this only works if a content length is given and the content is
+        // not gzipped
+        final boolean isZippedResponse = connection.getContentEncoding() != null
+                && connection.getContentEncoding().equals("gzip");
+
+        return contentLength > 0 && !isZippedResponse ? contentLength : -1;
+    }
+
+    private void checkForAuthorizationRequired(HttpURLConnection connection) {
+        try {
+            if (connection.getResponseCode() == HTTP_UNAUTHORIZED)
+                needsAuthorization = true;
+        } catch (IOException ioe) {
+            // No response code available, auth is not the problem
+        }
+    }
+
+    /**
+     * The stream handed out by {@link LoadRemoteFileTask#loadStream(URL)}.
+     * Reports progress, checks the load limit and the cancellation state on
+     * each read and disconnects from the remote when closed. Reads are
+     * buffered, so only some of them go to the remote (see
+     * {@link NetworkInputStream}).
+     */
+    private class RemoteInputStream extends FilterInputStream {
+
+        /** The connection we read from */
+        private final HttpURLConnection connection;
+        /** The total to report progress for, -1 if none */
+        private final int contentLength;
+        /** The number of bytes read so far */
+        private int totalBytes = 0;
+
+        private RemoteInputStream(HttpURLConnection connection, int contentLength)
+                throws IOException {
+            super(new BufferedInputStream(new NetworkInputStream(connection.getInputStream()),
+                    BUFFER_SIZE));
+
+            this.connection = connection;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+
+            final int result = super.read();
+            if (result >= 0)
+                onBytesRead(1);
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            checkCancelled();
+
+            final int bytesRead = super.read(buffer, offset, count);
+            if (bytesRead > 0)
+                onBytesRead(bytesRead);
+
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private void checkCancelled() throws IOException {
+            if (isCancelled())
+                throw new InterruptedIOException("Load cancelled");
+        }
+
+        private void onBytesRead(int bytesRead) throws IOException {
+            totalBytes += bytesRead;
+            if (loadLimit >= 0 && totalBytes > loadLimit)
+                throw new IOException("Load limit exceeded (read " + totalBytes +
+                        " bytes, limit was " + loadLimit + " bytes)!");
+
+            if (contentLength > 0)
+                publishLoadProgress(totalBytes, contentLength);
+        }
+    }
+
+    /**
+     * The connection's stream below the buffer of {@link RemoteInputStream}.
+     * The reads arriving here are the ones that might block on the network,
+     * so they call the remote read hooks of the task.
+     */
+    private class NetworkInputStream extends FilterInputStream {
+
+        /** Whether we reached the end of the remote file */
+        private boolean complete = false;
+
+        private NetworkInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            onRemoteReadStarted();
+
+            final int result;
+            try {
+                result = super.read();
+            } finally {
+                onRemoteReadFinished();
+            }
+
+            if (result < 0)
+                onComplete();
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            onRemoteReadStarted();
+
+            final int bytesRead;
+            try {
+                bytesRead = super.read(buffer, offset, count);
+            } finally {
+                onRemoteReadFinished();
+            }
+
+            if (bytesRead < 0)
+                onComplete();
+
+            return bytesRead;
+        }
+
+        private void onComplete() {
+            if (!complete) {
+                complete = true;
+
+                onRemoteFileLoaded();
+            }
+        }
+    }
+
+    /**
+     * Publish load progress, but only if the last update is some time ago or
+     * the load is complete. This keeps the number of progress objects and UI
+     * updates low for big files.
+     */
+    private void publishLoadProgress(int totalBytes, int contentLength) {
+        final long now = SystemClock.elapsedRealtime();
+
+        if (now - lastProgressTime >= PROGRESS_INTERVAL || totalBytes >= contentLength) {
+            lastProgressTime = now;
+
+            publishProgress(new Progress(totalBytes, contentLength));
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        final byte[] buffer = bufferPool.poll();
+
+        return buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    private static void releaseBuffer(byte[] buffer) {
+        // The size check is not atomic, but a few extra buffers do not hurt
+        if (bufferPool.size() < BUFFER_POOL_SIZE)
+            bufferPool.offer(buffer);
+    }
+
+    /**
+     * Byte array output stream that can hand out its internal buffer without
+     * copying if it was sized to fit exactly.
+     */
+    private static class SizedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * @param sizeHint The expected size, ignored if not positive or
+         *            unreasonably large.
+         */
+        private SizedByteArrayOutputStream(int sizeHint) {
+            super(sizeHint > 0 && sizeHint <= MAX_SIZE_HINT ? sizeHint : BUFFER_SIZE);
+        }
+
+        /**
+         * @return The content written, this might be the internal buffer.
+         */
+        private byte[] getBytes() {
+            return count == buf.length ? buf : toByteArray();
+        }
+    }
 }
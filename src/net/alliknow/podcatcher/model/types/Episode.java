@@ -17,14 +17,18 @@
 
 package net.alliknow.podcatcher.model.types;
 
-import android.text.Html;
-
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore.EpisodeTexts;
+import net.alliknow.podcatcher.model.SnapshotInputStream;
 import net.alliknow.podcatcher.model.tags.RSS;
+import net.alliknow.podcatcher.model.tags.TagTable;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Date;
 
@@ -32,25 +36,61 @@ import java.util.Date;
  * The episode type. Each episode represents an item from a podcast's RSS/XML
  * feed. Episodes are created when the podcast is loaded (parsed), you should
  * have no need to create instances yourself.
+ * <p>
+ * Once the podcast has a snapshot, the episode's description and long content
+ * description are not kept in memory, but read from the snapshot by the
+ * {@link PodcastSnapshotStore} when needed.
+ * </p>
  */
 public class Episode extends FeedEntity implements Comparable<Episode> {
 
+    /** The item tags we read */
+    private static enum ItemTag {
+        TITLE, LINK, GUID, EXPLICIT, ENCLOSURE, DATE, PUBDATE, DURATION, DESCRIPTION,
+        CONTENT_ENCODED
+    }
+
+    /** The lookup table from tag to the episode field it sets */
+    private static final TagTable<ItemTag> ITEM_TAGS = new TagTable<ItemTag>(10)
+            .put(RSS.TITLE, ItemTag.TITLE)
+            .put(RSS.LINK, ItemTag.LINK)
+            .put(RSS.GUID, ItemTag.GUID)
+            .put(RSS.EXPLICIT, ItemTag.EXPLICIT)
+            .put(RSS.ENCLOSURE, ItemTag.ENCLOSURE)
+            .put(RSS.DATE, ItemTag.DATE)
+            .put(RSS.PUBDATE, ItemTag.PUBDATE)
+            .put(RSS.DURATION, ItemTag.DURATION)
+            .put(RSS.DESCRIPTION, ItemTag.DESCRIPTION)
+            .put(RSS.CONTENT_ENCODED, RSS.CONTENT_NAMESPACE, ItemTag.CONTENT_ENCODED);
+
     /** The podcast this episode is part of */
     protected final Podcast podcast;
     /**
      * The index (starting with zero at the top of the feed) this episode is in
-     * its podcast. -1 means that we do not have this information.
+     * its podcast. -1 means that we do not have this information. This is not
+     * updated if the podcast keeps the episode instance on refresh, since the
+     * instance might be held in sorted collections.
      */
     protected final int index;
 
     /** The episode's long content description */
     protected String content;
-    /** The episode's release date */
-    protected Date pubDate;
+    /** The position of the description in the podcast's snapshot or -1 */
+    private long descriptionPosition = -1;
+    /** The position of the content in the podcast's snapshot or -1 */
+    private long contentPosition = -1;
+    /** The description's position in the snapshot last written */
+    private long writtenDescriptionPosition = -1;
+    /** The content's position in the snapshot last written */
+    private long writtenContentPosition = -1;
+    /** The episode's release date or {@link DateParser#INVALID} */
+    protected long pubDate = DateParser.INVALID;
     /** The episode's duration */
     protected int duration = -1;
     /** The episode's media file location */
     protected String mediaUrl;
+    /** The episode's globally unique identifier as given by the feed */
+    protected String guid;
 
     /**
      * Create a new episode.
@@ -75,18 +115,43 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      *            <code>null</code>.
      * @param name Episode name.
      * @param mediaUrl The remote URL of this episode.
-     * @param pubDate The publication date.
+     * @param pubDate The publication date in milliseconds or
+     *            {@link DateParser#INVALID} if not present.
      * @param description The episode's description.
      */
-    Episode(Podcast podcast, String name, String mediaUrl, Date pubDate, String description) {
+    Episode(Podcast podcast, String name, String mediaUrl, long pubDate, String description) {
         this(podcast, -1);
 
         this.name = name;
         this.mediaUrl = mediaUrl;
         this.description = description;
+        this.pubDate = pubDate;
+    }
+
+    /**
+     * Create a new episode from its binary snapshot.
+     * 
+     * @param podcast Podcast this episode belongs to. Cannot be
+     *            <code>null</code>.
+     * @param in The stream to read the snapshot from. The description and
+     *            content are not read, but remembered by their position.
+     * @throws IOException If reading the snapshot fails.
+     * @see #writeSnapshot(DataOutputStream, EpisodeTexts)
+     */
+    Episode(Podcast podcast, SnapshotInputStream in) throws IOException {
+        this(podcast, in.readInt());
+
+        setName(readString(in), in.readBoolean());
+        this.url = readString(in);
+        this.mediaUrl = readString(in);
+        this.guid = readString(in);
+        this.descriptionPosition = skipString(in);
+        this.contentPosition = skipString(in);
+        this.explicit = in.readBoolean();
+        this.duration = in.readInt();
         // Publication date might not be present
-        if (pubDate != null)
-            this.pubDate = new Date(pubDate.getTime());
+        if (in.readBoolean())
+            this.pubDate = in.readLong();
     }
 
     /**
@@ -97,8 +162,9 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
     }
 
     /**
-     * @return The index for this episode object in the podcast's feed. -1 means
-     *         that this information is not available.
+     * @return The index for this episode object in the podcast's feed when it
+     *         was created, later refreshes might have moved it. -1 means that
+     *         this information is not available.
      */
     public int getPositionInPodcast() {
         return index;
@@ -112,13 +178,36 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
     }
 
     /**
-     * @return The publication date for this episode.
+     * @return The episode's globally unique identifier as given by the feed.
+     *         Might be <code>null</code> if not available.
+     */
+    public String getGuid() {
+        return guid;
+    }
+
+    /**
+     * @return The key identifying this episode across feed refreshes. This is
+     *         the GUID if available and the media URL otherwise.
+     */
+    public String getIdentity() {
+        return guid == null || guid.isEmpty() ? mediaUrl : guid;
+    }
+
+    /**
+     * @return The publication date for this episode or <code>null</code> if
+     *         not available. This creates a new date object on each call, use
+     *         {@link #getPubDateMillis()} where possible.
      */
     public Date getPubDate() {
-        if (pubDate == null)
-            return null;
-        else
-            return new Date(pubDate.getTime());
+        return pubDate == DateParser.INVALID ? null : new Date(pubDate);
+    }
+
+    /**
+     * @return The publication date for this episode in milliseconds or
+     *         {@link DateParser#INVALID} if not available.
+     */
+    public long getPubDateMillis() {
+        return pubDate;
     }
 
     /**
@@ -143,12 +232,54 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      *         content:encoded tag (if any). Might be <code>null</code>.
      */
     public String getLongDescription() {
-        return content;
+        return getText(true);
+    }
+
+    @Override
+    public String getDescription() {
+        return getText(false);
+    }
+
+    /**
+     * Only call this while holding the podcast's lock.
+     * 
+     * @param longDescription Whether to look at the content or the
+     *            description.
+     * @return The text's position in the podcast's snapshot or -1 if the text
+     *         is held in memory.
+     */
+    public long getTextPosition(boolean longDescription) {
+        return longDescription ? contentPosition : descriptionPosition;
+    }
+
+    /**
+     * Only call this while holding the podcast's lock.
+     * 
+     * @param longDescription Whether to get the content or the description.
+     * @return The text held in memory, <code>null</code> if it is only in the
+     *         snapshot.
+     */
+    public String getTextInMemory(boolean longDescription) {
+        return longDescription ? content : description;
+    }
+
+    private String getText(boolean longDescription) {
+        final PodcastSnapshotStore store;
+
+        synchronized (podcast) {
+            store = podcast.getSnapshotStore();
+
+            // The podcast never had a snapshot, all texts are in memory
+            if (store == null)
+                return getTextInMemory(longDescription);
+        }
+
+        return store.readEpisodeText(this, longDescription);
     }
 
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
 
     @Override
@@ -180,11 +311,14 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
         // We mainly compare by the publication date of the episodes. If these
         // are not available or are equal, we check for their position in the
         // podcast. As a last resort we simply return something <> 0.
-        if (this.pubDate != null && another.pubDate != null)
-            result = another.pubDate.compareTo(pubDate);
-        else if (this.pubDate == null && another.pubDate != null)
+        final boolean hasDate = pubDate != DateParser.INVALID;
+        final boolean anotherHasDate = another.pubDate != DateParser.INVALID;
+
+        if (hasDate && anotherHasDate)
+            result = pubDate > another.pubDate ? -1 : pubDate < another.pubDate ? 1 : 0;
+        else if (!hasDate && anotherHasDate)
             result = -1;
-        else if (this.pubDate != null && another.pubDate == null)
+        else if (hasDate && !anotherHasDate)
             result = 1;
 
         // This should never be zero unless the episodes are equal, since a
@@ -222,49 +356,126 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
 
         // Look at all start tags of this item
         while (parser.nextTag() == XmlPullParser.START_TAG) {
-            final String tagName = parser.getName();
-
-            // Episode title
-            if (tagName.equalsIgnoreCase(RSS.TITLE))
-                name = Html.fromHtml(parser.nextText().trim()).toString();
-            // Episode online location
-            else if (tagName.equalsIgnoreCase(RSS.LINK))
-                url = parser.nextText();
-            // Explicit info found
-            else if (tagName.equalsIgnoreCase(RSS.EXPLICIT))
-                explicit = parseExplicit(parser.nextText());
-            // Episode media URL
-            else if (tagName.equalsIgnoreCase(RSS.ENCLOSURE)) {
-                // Only set the media URL if it is actually there, this will
-                // prevent overriding it when there are multiple enclosures
-                final String urlAttribute = parser.getAttributeValue("", RSS.URL);
-                if (urlAttribute != null)
-                    mediaUrl = normalizeUrl(urlAttribute);
-
-                parser.nextText();
-            }
-            // Episode publication date (2 options)
-            else if (tagName.equalsIgnoreCase(RSS.DATE) && pubDate == null)
-                pubDate = parseDate(parser.nextText());
-            else if (tagName.equalsIgnoreCase(RSS.PUBDATE))
-                pubDate = parseDate(parser.nextText());
-            // Episode duration
-            else if (tagName.equalsIgnoreCase(RSS.DURATION))
-                duration = parseDuration(parser.nextText());
-            // Episode description
-            else if (tagName.equalsIgnoreCase(RSS.DESCRIPTION))
-                description = parser.nextText();
-            else if (isContentEncodedTag(parser))
-                content = parser.nextText();
+            final ItemTag tag = ITEM_TAGS.get(parser);
+
             // Unneeded node, skip...
-            else
+            if (tag == null) {
                 ParserUtils.skipSubTree(parser);
+                continue;
+            }
+
+            switch (tag) {
+                // Episode title
+                case TITLE:
+                    setName(parser.nextText().trim(), true);
+                    break;
+                // Episode online location
+                case LINK:
+                    url = parser.nextText();
+                    break;
+                // Episode unique id
+                case GUID:
+                    guid = parser.nextText().trim();
+                    break;
+                // Explicit info found
+                case EXPLICIT:
+                    explicit = parseExplicit(parser.nextText());
+                    break;
+                // Episode media URL
+                case ENCLOSURE:
+                    // Only set the media URL if it is actually there, this will
+                    // prevent overriding it when there are multiple enclosures
+                    final String urlAttribute = parser.getAttributeValue("", RSS.URL);
+                    if (urlAttribute != null)
+                        mediaUrl = normalizeUrl(urlAttribute);
+
+                    parser.nextText();
+                    break;
+                // Episode publication date (2 options)
+                case DATE:
+                    if (pubDate == DateParser.INVALID)
+                        pubDate = parseDate(parser.nextText());
+                    else
+                        ParserUtils.skipSubTree(parser);
+                    break;
+                case PUBDATE:
+                    pubDate = parseDate(parser.nextText());
+                    break;
+                // Episode duration
+                case DURATION:
+                    duration = parseDuration(parser.nextText());
+                    break;
+                // Episode description
+                case DESCRIPTION:
+                    description = parser.nextText();
+                    break;
+                case CONTENT_ENCODED:
+                    content = parser.nextText();
+                    break;
+            }
         }
 
         // Make sure we end at item tag
         parser.require(XmlPullParser.END_TAG, "", RSS.ITEM);
     }
 
+    /**
+     * Write all the episode's fields to a binary snapshot, it can be restored
+     * via {@link #Episode(Podcast, SnapshotInputStream)}. The positions of the
+     * description and content are remembered, call
+     * {@link #useWrittenSnapshot()} once the snapshot is in place.
+     * 
+     * @param out The stream to write to, positions are relative to its start.
+     * @param texts Where to get the description and content from.
+     * @throws IOException If writing fails.
+     */
+    void writeSnapshot(DataOutputStream out, EpisodeTexts texts) throws IOException {
+        out.writeInt(index);
+        writeString(out, name);
+        out.writeBoolean(nameIsHtml);
+        writeString(out, url);
+        writeString(out, mediaUrl);
+        writeString(out, guid);
+
+        final String description = texts.get(this, false);
+        writtenDescriptionPosition = description == null ? -1 : out.size();
+        writeString(out, description);
+
+        final String content = texts.get(this, true);
+        writtenContentPosition = content == null ? -1 : out.size();
+        writeString(out, content);
+
+        out.writeBoolean(explicit);
+        out.writeInt(duration);
+        out.writeBoolean(pubDate != DateParser.INVALID);
+        if (pubDate != DateParser.INVALID)
+            out.writeLong(pubDate);
+    }
+
+    /**
+     * Drop the description and content from memory and read them from the
+     * snapshot last written instead. Only call this while holding the
+     * podcast's lock.
+     */
+    void useWrittenSnapshot() {
+        descriptionPosition = writtenDescriptionPosition;
+        contentPosition = writtenContentPosition;
+        description = null;
+        content = null;
+    }
+
+    /**
+     * Read the description and content back into memory because the
+     * snapshot is going away. Only call this while holding the podcast's
+     * lock.
+     */
+    void releaseSnapshot() {
+        description = getDescription();
+        content = getLongDescription();
+        descriptionPosition = -1;
+        contentPosition = -1;
+    }
+
     protected int parseDuration(String durationString) {
         int result = -1;
 
@@ -293,9 +504,4 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
         // Never return zero as a duration since that does not make sense.
         return result == 0 ? -1 : result;
     }
-
-    protected boolean isContentEncodedTag(XmlPullParser parser) {
-        return RSS.CONTENT_ENCODED.equals(parser.getName()) &&
-                RSS.CONTENT_NAMESPACE.equals(parser.getNamespace(parser.getPrefix()));
-    }
 }
@@ -17,10 +17,10 @@
 
 package net.alliknow.podcatcher.model.types;
 
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.EpisodeManager;
 import net.alliknow.podcatcher.model.PodcastManager;
 
-import java.util.Date;
 
 /**
  * Instances of this type represent additional information on episodes that is
@@ -58,8 +58,11 @@ public class EpisodeMetadata {
     public String podcastUrl;
     /** The episode name for this metadata */
     public String episodeName;
-    /** The episode publication date for this metadata */
-    public Date episodePubDate;
+    /**
+     * The episode publication date for this metadata in milliseconds or
+     * {@link DateParser#INVALID}
+     */
+    public long episodePubDate = DateParser.INVALID;
     /** The episode description for this metadata */
     public String episodeDescription;
 
@@ -17,15 +17,22 @@
 
 package net.alliknow.podcatcher.model.types;
 
+import android.text.Html;
+import android.util.LruCache;
+
+import net.alliknow.podcatcher.model.DateParser;
+import net.alliknow.podcatcher.model.SnapshotInputStream;
 import net.alliknow.podcatcher.model.tags.RSS;
 
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.Charset;
 import java.util.Locale;
 
 /**
@@ -35,21 +42,23 @@ import java.util.Locale;
  */
 public abstract class FeedEntity {
 
-    /** The date format used by RSS feeds */
-    private static final String DATE_FORMAT_TEMPLATE = "EEE, dd MMM yy HH:mm:ss zzz";
-    /** Our formatter used when reading the episode item's date string */
-    private static final SimpleDateFormat DATE_FORMATTER =
-            new SimpleDateFormat(DATE_FORMAT_TEMPLATE, Locale.US);
-    /**
-     * The alternative date formats supported because they are used by some
-     * feeds, these are all tried in the given order if the default fails
-     */
-    private static final String[] DATE_FORMAT_TEMPLATE_ALTERNATIVES = {
-            "EEE, dd MMM yy", "yy-MM-dd"
-    };
+    /** The charset strings are written to snapshots in */
+    private static final Charset SNAPSHOT_CHARSET = Charset.forName("UTF-8");
+    /** The maximum length of a string read from a snapshot (in bytes) */
+    private static final int MAX_SNAPSHOT_STRING_LENGTH = 8 * 1024 * 1024;
+    /** The number of URL normalizations cached */
+    private static final int NORMALIZED_URL_CACHE_SIZE = 1024;
 
-    /** Name of the entity */
+    /** The normalized URLs by URL string, only for URLs that changed */
+    private static final LruCache<String, String> NORMALIZED_URLS =
+            new LruCache<>(NORMALIZED_URL_CACHE_SIZE);
+
+    /** Name of the entity, this might still be HTML-encoded */
     protected String name;
+    /** Whether the name needs to be HTML-decoded before it is shown */
+    protected boolean nameIsHtml = false;
+    /** The decoded name, only set once it was needed */
+    private String decodedName;
     /** Location of the entity's file */
     protected String url;
     /** Entity's description */
@@ -62,7 +71,54 @@ public abstract class FeedEntity {
      * @return The entity's title. This might by empty or <code>null</code>.
      */
     public String getName() {
-        return name;
+        if (!nameIsHtml)
+            return name;
+
+        // Decode on first use, most names are never shown
+        String result = decodedName;
+        if (result == null)
+            decodedName = result = Html.fromHtml(name).toString();
+
+        return result;
+    }
+
+    /**
+     * Set the entity's name.
+     * 
+     * @param name The name to set.
+     * @param html Whether the name is HTML and might need decoding. If so,
+     *            decoding is delayed until {@link #getName()} is called and
+     *            skipped for names that would come out unchanged.
+     */
+    protected void setName(String name, boolean html) {
+        this.name = name;
+        this.nameIsHtml = html && name != null && needsHtmlDecoding(name);
+        this.decodedName = null;
+    }
+
+    /**
+     * Check whether decoding the given text as HTML could change it. Besides
+     * entities and tags, this looks for white space the decoder might
+     * collapse or drop.
+     * 
+     * @param text Text to check.
+     * @return <code>false</code> iff decoding the text is a no-op.
+     */
+    protected static boolean needsHtmlDecoding(String text) {
+        // The decoder drops leading white space
+        char previous = ' ';
+
+        for (int index = 0; index < text.length(); index++) {
+            final char c = text.charAt(index);
+
+            if (c == '&' || c == '<' || c < ' ' || (c == ' ' && previous == ' '))
+                return true;
+
+            previous = c;
+        }
+
+        // Trailing white space is left to the decoder as well
+        return text.length() > 0 && previous == ' ';
     }
 
     /**
@@ -89,7 +145,9 @@ public abstract class FeedEntity {
 
     /**
      * Normalize the given URL string. See
-     * http://en.wikipedia.org/wiki/URL_normalization for details.
+     * http://en.wikipedia.org/wiki/URL_normalization for details. URL strings
+     * already normalized are detected and returned right away, the results
+     * for all others are cached.
      * 
      * @param spec The URL string to normalize.
      * @return The same URL string with unchanged semantics, but normalized
@@ -97,6 +155,78 @@ public abstract class FeedEntity {
      *         given is returned unaltered.
      */
     protected String normalizeUrl(final String spec) {
+        if (spec == null || isNormalizedUrl(spec))
+            return spec;
+
+        String result = NORMALIZED_URLS.get(spec);
+        if (result == null) {
+            result = normalizeUrlSyntax(spec);
+            NORMALIZED_URLS.put(spec, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Check whether the given URL string would come out of
+     * {@link #normalizeUrlSyntax(String)} unchanged. This only accepts the
+     * most common form: A lower case http(s) scheme and host, no user info,
+     * port or fragment and a non-empty path without a trailing slash or dot
+     * segments. For anything else, <code>false</code> is returned.
+     * 
+     * @param spec The URL string to check.
+     * @return Whether the string is known to be normalized.
+     */
+    static boolean isNormalizedUrl(String spec) {
+        int index;
+        if (spec.startsWith("http://"))
+            index = 7;
+        else if (spec.startsWith("https://"))
+            index = 8;
+        else
+            return false;
+
+        // The host, made of labels with letters, digits and inner dashes
+        final int hostStart = index;
+        char previous = '.';
+        for (; index < spec.length(); index++) {
+            final char c = spec.charAt(index);
+
+            if (c == '/')
+                break;
+            else if ((c == '.' || c == '-') && (previous == '.' || previous == '-'))
+                return false;
+            else if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-'))
+                return false;
+
+            previous = c;
+        }
+
+        if (previous == '.' || previous == '-' || index == spec.length())
+            return false;
+
+        // The path and query, invalid characters are fine here because
+        // invalid URLs are not changed at all
+        boolean query = false;
+        for (; index < spec.length(); index++) {
+            final char c = spec.charAt(index);
+
+            if (c == '#' || c <= ' ' || c == '\\')
+                return false;
+            else if (c == '?')
+                query = true;
+            else if (!query && previous == '/' && (c == '.' || c == '/' || c == '?'))
+                return false;
+
+            previous = c;
+        }
+
+        // The path can only end with a slash if it is the root
+        final int pathEnd = query ? spec.indexOf('?', hostStart) : spec.length();
+        return spec.charAt(pathEnd - 1) != '/' || spec.indexOf('/', hostStart) == pathEnd - 1;
+    }
+
+    private static String normalizeUrlSyntax(String spec) {
         try {
             // Trim white spaces, normalize path, throw exception if mal-formed
             final URL url = new URI(spec.trim()).normalize().toURL();
@@ -145,26 +275,85 @@ public abstract class FeedEntity {
      * publication dates. The method will try to read different formats.
      * 
      * @param dateString The string from the RSS/XML feed to parse.
-     * @return The date or <code>null</code> if the string could not be parsed.
+     * @return The date in milliseconds or {@link DateParser#INVALID} if the
+     *         string could not be parsed.
+     * @see DateParser
      */
-    protected Date parseDate(String dateString) {
-        try {
-            // SimpleDateFormat is not thread safe
-            synchronized (DATE_FORMATTER) {
-                return DATE_FORMATTER.parse(dateString);
-            }
-        } catch (ParseException e) {
-            // The default format is not available, try all the other formats we
-            // support...
-            for (String format : DATE_FORMAT_TEMPLATE_ALTERNATIVES)
-                try {
-                    return new SimpleDateFormat(format, Locale.US).parse(dateString);
-                } catch (ParseException e1) {
-                    // Does not fit the format, pass and try next
-                }
+    protected long parseDate(String dateString) {
+        return DateParser.parse(dateString);
+    }
+
+    /**
+     * Write a string to a binary snapshot. Other than
+     * {@link DataOutputStream#writeUTF(String)} this supports <code>null</code>
+     * and strings of any length.
+     * 
+     * @param out The stream to write to.
+     * @param value The string to write, might be <code>null</code>.
+     * @throws IOException If writing fails.
+     * @see #readString(DataInput)
+     */
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null)
+            out.writeInt(-1);
+        else {
+            final byte[] bytes = value.getBytes(SNAPSHOT_CHARSET);
+
+            out.writeInt(bytes.length);
+            out.write(bytes);
         }
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     * This is also used to read episode texts from a snapshot on demand.
+     * 
+     * @param in The stream to read from.
+     * @return The string read, might be <code>null</code>.
+     * @throws IOException If reading fails or the data is corrupt.
+     */
+    public static String readString(DataInput in) throws IOException {
+        final int length = readStringLength(in);
+
+        if (length < 0)
+            return null;
+        else {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+
+            return new String(bytes, SNAPSHOT_CHARSET);
+        }
+    }
+
+    /**
+     * Skip over a string written by
+     * {@link #writeString(DataOutputStream, String)} without reading it. Use
+     * {@link #readString(DataInput)} on the snapshot file at the position
+     * returned to get the string later.
+     * 
+     * @param in The stream to read from.
+     * @return The position of the string in the snapshot or -1 if the string
+     *         is <code>null</code>.
+     * @throws IOException If reading fails or the data is corrupt.
+     */
+    protected static long skipString(SnapshotInputStream in) throws IOException {
+        final long position = in.getPosition();
+        final int length = readStringLength(in);
+
+        if (length < 0)
+            return -1;
+        else if (in.skipBytes(length) < length)
+            throw new EOFException("Snapshot string truncated");
+        else
+            return position;
+    }
+
+    private static int readStringLength(DataInput in) throws IOException {
+        final int length = in.readInt();
+
+        if (length > MAX_SNAPSHOT_STRING_LENGTH)
+            throw new IOException("Snapshot string too long: " + length);
 
-        // None of the formats matched
-        return null;
+        return length;
     }
 }
@@ -19,22 +19,32 @@ package net.alliknow.podcatcher.model.types;
 
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.text.Html;
+import android.text.TextUtils;
 import android.util.Base64;
 
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore;
+import net.alliknow.podcatcher.model.PodcastSnapshotStore.EpisodeTexts;
+import net.alliknow.podcatcher.model.SnapshotInputStream;
 import net.alliknow.podcatcher.model.tags.RSS;
+import net.alliknow.podcatcher.model.tags.TagTable;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The podcast type. This represents the most important type in the podcatcher
@@ -60,9 +70,38 @@ import java.util.Locale;
  * {@link #isLogoCached()} to find the current state, {@link #getLogo()} will
  * return an immutable copy.
  * </p>
+ * <p>
+ * <b>Snapshots:</b> The parsed content of a podcast can be written to a binary
+ * snapshot using {@link #writeSnapshot(DataOutputStream, EpisodeTexts)} and
+ * restored via
+ * {@link #readSnapshot(SnapshotInputStream, PodcastSnapshotStore, File)},
+ * which is much faster than loading and parsing the RSS file again. As long as
+ * the podcast has a snapshot file, its episodes' descriptions are only read
+ * from there by the {@link PodcastSnapshotStore} when needed.
+ * </p>
  */
 public class Podcast extends FeedEntity implements Comparable<Podcast> {
 
+    /** The maximum number of recent episodes to learn the cadence from */
+    private static final int MAX_CADENCE_SAMPLES = 20;
+    /** The number of known episodes in a row that stop an incremental parse */
+    private static final int KNOWN_EPISODES_TO_STOP = 3;
+    /** The source of the snapshot ids, used in the text cache keys */
+    private static final AtomicLong SNAPSHOT_IDS = new AtomicLong();
+
+    /** The channel tags we read */
+    private static enum ChannelTag {
+        TITLE, EXPLICIT, IMAGE, THUMBNAIL, ITEM
+    }
+
+    /** The lookup table from tag to what the podcast does with it */
+    private static final TagTable<ChannelTag> CHANNEL_TAGS = new TagTable<ChannelTag>(5)
+            .put(RSS.TITLE, ChannelTag.TITLE)
+            .put(RSS.EXPLICIT, ChannelTag.EXPLICIT)
+            .put(RSS.IMAGE, ChannelTag.IMAGE)
+            .put(RSS.THUMBNAIL, ChannelTag.THUMBNAIL)
+            .put(RSS.ITEM, ChannelTag.ITEM);
+
     /** Broadcast language */
     protected Language language;
     /** Podcast genre */
@@ -80,13 +119,38 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
     /** Password for http authorization */
     protected String password;
 
-    /** The point in time when the RSS file as last been set */
-    protected Date lastLoaded;
-    /** The podcasts list of episodes */
-    protected List<Episode> episodes = new ArrayList<>();
+    /**
+     * The point in time when the RSS file as last been set in milliseconds or
+     * {@link DateParser#INVALID}
+     */
+    protected long lastLoaded = DateParser.INVALID;
+    /** The http entity tag the RSS file was last served with */
+    protected String etag;
+    /** The http last modified date the RSS file was last served with */
+    protected String lastModified;
+    /** The typical time between two episodes (in milliseconds) */
+    protected long publishingInterval = -1;
+    /** The publication date of the newest episode (in milliseconds) */
+    protected long newestEpisodeDate = -1;
+    /**
+     * The podcasts list of episodes. This is never changed, but replaced as a
+     * whole by an unmodifiable list, so it can be handed out without copying.
+     */
+    protected volatile List<Episode> episodes = Collections.emptyList();
+
+    /** The store reading the episodes' texts, set once there is a snapshot */
+    private PodcastSnapshotStore snapshotStore;
+    /** The snapshot file the episodes' texts are read from, if any */
+    private File snapshotFile;
+    /** The id of the current snapshot file's content */
+    private long snapshotId;
 
     /** The count of failed load attempts */
     private int failedLoadAttempts = 0;
+    /** The count of failed load attempts since the app started */
+    private int sessionFailedLoadAttempts = 0;
+    /** The point in time before which the load should not be retried */
+    private long retryAfter = -1;
 
     /**
      * Create a new podcast by name and RSS file location. The name will not be
@@ -105,6 +169,28 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         this.url = normalizeUrl(url);
     }
 
+    /**
+     * Set the podcast's name from HTML-encoded text, as found in OPML files
+     * for example. The name is decoded once it is actually needed.
+     * 
+     * @param name The HTML-encoded name to set.
+     */
+    public void setHtmlName(String name) {
+        setName(name, true);
+    }
+
+    /**
+     * Move the podcast to a new online location, e.g. because the feed has
+     * permanently been redirected. Note that this changes the podcast's
+     * identity as defined by {@link #equals(Object)}, so make sure the podcast
+     * is not used as a key in any hashed collection when calling this.
+     * 
+     * @param url The new location of the podcast's RSS file.
+     */
+    public void setUrl(String url) {
+        this.url = normalizeUrl(url);
+    }
+
     /**
      * @return The language.
      */
@@ -182,13 +268,13 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * <code>null</code> but an empty list when encountering problems. Set and
      * parse the RSS file before expecting any results.
      * 
-     * @return The list of episodes as listed in the feed.
+     * @return The list of episodes as listed in the feed. This list cannot be
+     *         modified and does not change when the podcast is re-loaded.
      * @see #parse(XmlPullParser)
      */
     public List<Episode> getEpisodes() {
-        // Need to return a copy, so nobody can change this on us and changes
-        // made in the model do not make problems in the UI
-        return new ArrayList<>(episodes);
+        // No need to copy, the list is never changed but only replaced
+        return episodes;
     }
 
     /**
@@ -199,16 +285,14 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * @return The number of clean episodes left.
      */
     public int removeExplicitEpisodes() {
-        Iterator<Episode> episodeIterator = episodes.iterator();
-
-        while (episodeIterator.hasNext()) {
-            final Episode episode = episodeIterator.next();
+        final List<Episode> cleanEpisodes = new ArrayList<>();
 
-            if (episode.isExplicit())
-                episodeIterator.remove();
-        }
+        for (Episode episode : episodes)
+            if (!episode.isExplicit())
+                cleanEpisodes.add(episode);
 
-        return episodes.size();
+        episodes = Collections.unmodifiableList(cleanEpisodes);
+        return cleanEpisodes.size();
     }
 
     /**
@@ -258,10 +342,108 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
 
     /**
      * @return The point in time this podcast has last been loaded or
-     *         <code>null</code> iff it had not been loaded before.
+     *         <code>null</code> iff it had not been loaded before. This
+     *         creates a new date object on each call, use
+     *         {@link #getLastLoadedMillis()} where possible.
      */
     public Date getLastLoaded() {
-        return lastLoaded == null ? null : new Date(lastLoaded.getTime());
+        return lastLoaded == DateParser.INVALID ? null : new Date(lastLoaded);
+    }
+
+    /**
+     * @return The point in time this podcast has last been loaded in
+     *         milliseconds or {@link DateParser#INVALID} iff it had not been
+     *         loaded before.
+     */
+    public long getLastLoadedMillis() {
+        return lastLoaded;
+    }
+
+    /**
+     * @return Whether the podcast has been loaded before, either from its feed
+     *         or from a snapshot.
+     */
+    public boolean isLoaded() {
+        return lastLoaded != DateParser.INVALID;
+    }
+
+    /**
+     * Mark the podcast as freshly loaded without re-parsing its RSS file. Use
+     * this if the server reports that the feed has not been modified since the
+     * last load. Has no effect if the podcast has never been parsed.
+     */
+    public void markNotModified() {
+        if (lastLoaded != DateParser.INVALID)
+            lastLoaded = System.currentTimeMillis();
+    }
+
+    /**
+     * @return The http entity tag (ETag) the podcast's RSS file was last served
+     *         with. Might be <code>null</code> if unknown.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return The http last modified date the podcast's RSS file was last
+     *         served with, as given by the server. Might be <code>null</code>
+     *         if unknown.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Set the http cache validators for this podcast. These are send with the
+     * next request for the RSS file so the server can tell us that the feed
+     * has not changed.
+     * 
+     * @param etag The entity tag (ETag) to set. Give <code>null</code> to
+     *            reset.
+     * @param lastModified The last modified date to set. Give
+     *            <code>null</code> to reset.
+     * @return Whether any of the validators changed.
+     */
+    public boolean setCacheValidators(String etag, String lastModified) {
+        final boolean changed = !TextUtils.equals(this.etag, etag)
+                || !TextUtils.equals(this.lastModified, lastModified);
+
+        this.etag = etag;
+        this.lastModified = lastModified;
+
+        return changed;
+    }
+
+    /**
+     * @return The typical amount of time between the publication of two
+     *         episodes of this podcast in milliseconds as learned from the
+     *         feed, or -1 if unknown.
+     */
+    public long getPublishingInterval() {
+        return publishingInterval;
+    }
+
+    /**
+     * @return The publication date of the podcast's newest episode in
+     *         milliseconds, or -1 if unknown.
+     */
+    public long getNewestEpisodeDate() {
+        return newestEpisodeDate;
+    }
+
+    /**
+     * Set the podcast's publishing cadence. This is learned on
+     * {@link #parse(XmlPullParser)}, use this to restore persisted values.
+     * 
+     * @param interval The typical amount of time between two episodes in
+     *            milliseconds. Give -1 if unknown.
+     * @param newestEpisodeDate The publication date of the newest episode in
+     *            milliseconds. Give -1 if unknown.
+     */
+    public void setPublishingCadence(long interval, long newestEpisodeDate) {
+        this.publishingInterval = interval;
+        this.newestEpisodeDate = newestEpisodeDate;
     }
 
     /**
@@ -269,6 +451,8 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      */
     public void resetFailedLoadAttempts() {
         this.failedLoadAttempts = 0;
+        this.sessionFailedLoadAttempts = 0;
+        this.retryAfter = -1;
     }
 
     /**
@@ -276,6 +460,7 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      */
     public void incrementFailedLoadAttempts() {
         this.failedLoadAttempts++;
+        this.sessionFailedLoadAttempts++;
     }
 
     /**
@@ -286,9 +471,198 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         return this.failedLoadAttempts;
     }
 
+    /**
+     * @return The number of failed loads since the app started. Other than
+     *         {@link #getFailedLoadAttemptCount()}, this is not persisted and
+     *         not affected by {@link #setFailedLoadAttemptCount(int)}.
+     */
+    public int getSessionFailedLoadAttemptCount() {
+        return this.sessionFailedLoadAttempts;
+    }
+
+    /**
+     * Set the number of failed loads. Use this to restore persisted values.
+     * 
+     * @param count The number of failed loads (>= 0).
+     */
+    public void setFailedLoadAttemptCount(int count) {
+        this.failedLoadAttempts = count;
+    }
+
+    /**
+     * @return The point in time (in milliseconds) before which background loads
+     *         of this podcast should not be retried after failures, or -1 if
+     *         there is no such limit.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Set the point in time before which background loads of this podcast
+     * should not be retried. This is reset by
+     * {@link #resetFailedLoadAttempts()}.
+     * 
+     * @param retryAfter The point in time in milliseconds.
+     */
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Write the podcast's parsed content, i.e. the information read by
+     * {@link #parse(XmlPullParser)} including all episodes, to a binary
+     * snapshot. Call {@link #useWrittenSnapshot(PodcastSnapshotStore, File)}
+     * once the snapshot is saved to its file.
+     * 
+     * @param out The stream to write to, the episode texts' positions are
+     *            taken relative to its start.
+     * @param texts Where to get the episodes' texts from.
+     * @throws IOException If writing fails.
+     * @see #readSnapshot(SnapshotInputStream, PodcastSnapshotStore, File)
+     */
+    public void writeSnapshot(DataOutputStream out, EpisodeTexts texts) throws IOException {
+        out.writeLong(lastLoaded == DateParser.INVALID ? -1 : lastLoaded);
+        writeString(out, name);
+        out.writeBoolean(nameIsHtml);
+        writeString(out, logoUrl);
+        out.writeBoolean(explicit);
+
+        // Make sure count and episodes match if the podcast is re-parsed
+        final List<Episode> snapshotEpisodes = episodes;
+
+        out.writeInt(snapshotEpisodes.size());
+        for (Episode episode : snapshotEpisodes)
+            episode.writeSnapshot(out, texts);
+    }
+
+    /**
+     * Restore the podcast's content from a snapshot written by
+     * {@link #writeSnapshot(DataOutputStream, EpisodeTexts)}. Afterwards, the
+     * podcast looks like it has been parsed at the time the snapshot was
+     * taken. The snapshot is only used if the podcast has not been loaded yet
+     * and is read completely before any of the podcast's members are changed.
+     * The episodes' texts are not read, but taken from the snapshot file
+     * later.
+     * 
+     * @param in The stream to read from, positioned at the start of the file.
+     * @param store The store to read the episodes' texts later.
+     * @param file The snapshot file read from.
+     * @return Whether the snapshot was used.
+     * @throws IOException If reading fails or the snapshot is corrupt.
+     */
+    public boolean readSnapshot(SnapshotInputStream in, PodcastSnapshotStore store, File file)
+            throws IOException {
+        final long snapshotLoaded = in.readLong();
+        final String snapshotName = readString(in);
+        final boolean snapshotNameIsHtml = in.readBoolean();
+        final String snapshotLogoUrl = readString(in);
+        final boolean snapshotExplicit = in.readBoolean();
+
+        final int episodeCount = in.readInt();
+        if (episodeCount < 0)
+            throw new IOException("Invalid episode count in snapshot: " + episodeCount);
+
+        final List<Episode> snapshotEpisodes = new ArrayList<>();
+        for (int index = 0; index < episodeCount; index++)
+            snapshotEpisodes.add(new Episode(this, in));
+
+        synchronized (this) {
+            // Do not override content we already have
+            if (lastLoaded != DateParser.INVALID || snapshotLoaded < 0)
+                return false;
+
+            if (name == null)
+                setName(snapshotName, snapshotNameIsHtml);
+            logoUrl = snapshotLogoUrl;
+            explicit = snapshotExplicit;
+            episodes = Collections.unmodifiableList(snapshotEpisodes);
+            lastLoaded = snapshotLoaded;
+            snapshotStore = store;
+            snapshotFile = file;
+            snapshotId = SNAPSHOT_IDS.incrementAndGet();
+            updatePublishingCadence();
+        }
+
+        return true;
+    }
+
+    /**
+     * Make the podcast read its episodes' texts from the snapshot last written
+     * via {@link #writeSnapshot(DataOutputStream, EpisodeTexts)} and drop them
+     * from memory. Hold the podcast's lock while putting the snapshot file in
+     * place and calling this, so no text is read in between.
+     * 
+     * @param store The store to read the episodes' texts.
+     * @param file The file the snapshot was saved to.
+     */
+    public synchronized void useWrittenSnapshot(PodcastSnapshotStore store, File file) {
+        for (Episode episode : episodes)
+            episode.useWrittenSnapshot();
+
+        snapshotStore = store;
+        snapshotFile = file;
+        snapshotId = SNAPSHOT_IDS.incrementAndGet();
+    }
+
+    /**
+     * Tell the podcast its snapshot file has moved. Hold the podcast's lock
+     * while moving the file and calling this.
+     * 
+     * @param file The snapshot's new file.
+     */
+    public synchronized void moveSnapshot(File file) {
+        if (snapshotFile != null)
+            snapshotFile = file;
+    }
+
+    /**
+     * Read all episodes' texts back into memory, so the snapshot file can be
+     * deleted. Hold the podcast's lock while calling this and deleting the
+     * file.
+     */
+    public synchronized void releaseSnapshot() {
+        if (snapshotFile != null) {
+            for (Episode episode : episodes)
+                episode.releaseSnapshot();
+
+            snapshotFile = null;
+        }
+    }
+
+    /**
+     * Only call this while holding the podcast's lock.
+     * 
+     * @return The store reading the episodes' texts, or <code>null</code> if
+     *         the podcast never had a snapshot and all texts are in memory.
+     */
+    public PodcastSnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    /**
+     * Only call this while holding the podcast's lock.
+     * 
+     * @return The snapshot file the episodes' texts are read from, or
+     *         <code>null</code> if there is none.
+     */
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Only call this while holding the podcast's lock.
+     * 
+     * @return The id of the snapshot file's current content, this changes
+     *         each time the podcast uses a new snapshot.
+     */
+    public long getSnapshotId() {
+        return snapshotId;
+    }
+
     @Override
     public String toString() {
-        return name + " at " + url;
+        return getName() + " at " + url;
     }
 
     @Override
@@ -312,7 +686,7 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
     @Override
     public int compareTo(Podcast another) {
         if (name != null && another.name != null)
-            return name.compareToIgnoreCase(another.name);
+            return getName().compareToIgnoreCase(another.getName());
         else if (name == null && another.name != null)
             return -1;
         else if (name != null && another.name == null)
@@ -365,54 +739,96 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * @param parser Parser used to read the RSS/XML file.
      * @throws IOException If we encounter problems read the file.
      * @throws XmlPullParserException On parsing errors.
+     * @see #parse(XmlPullParser, boolean)
      */
     public void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
-        // Reset state, keep temp list of old episodes is case of errors
-        final List<Episode> oldEpisodes = new ArrayList<>(episodes);
-        episodes.clear();
+        parse(parser, false);
+    }
+
+    /**
+     * Set the RSS file parser representing this podcast. This works like
+     * {@link #parse(XmlPullParser)}, but can also run incrementally: In this
+     * mode, episodes already known from the last parse (identified by their
+     * GUID or media URL) are kept as they are, including the episode
+     * instances. If the feed lists its episodes newest first, parsing stops
+     * once a run of known episodes is found and the remaining episodes are
+     * taken from the former episode list.
+     * 
+     * @param parser Parser used to read the RSS/XML file.
+     * @param incremental Whether to run the incremental mode.
+     * @throws IOException If we encounter problems read the file.
+     * @throws XmlPullParserException On parsing errors.
+     */
+    public void parse(XmlPullParser parser, boolean incremental) throws XmlPullParserException,
+            IOException {
+        // The episode list is only replaced once parsing completed, so it is
+        // kept as it is in case of errors
+        final List<Episode> oldEpisodes = episodes;
+        final List<Episode> parsedEpisodes = new ArrayList<>();
+
+        // The episodes we already know, only needed for incremental parse
+        Map<String, Episode> knownEpisodes = null;
+        if (incremental) {
+            knownEpisodes = new HashMap<>();
+
+            for (Episode episode : oldEpisodes)
+                knownEpisodes.put(episode.getIdentity(), episode);
+        }
+        // We can only skip the rest of the feed if it is sorted newest first
+        final boolean canStopEarly = incremental && isNewestFirst(oldEpisodes);
 
         try {
             // Start parsing
             int eventType = parser.next();
             int episodeIndex = 0;
+            int knownEpisodesInRow = 0;
 
             // Read complete document
             while (eventType != XmlPullParser.END_DOCUMENT) {
                 // We only need start tags here
                 if (eventType == XmlPullParser.START_TAG) {
-                    String tagName = parser.getName();
+                    final ChannelTag tag = CHANNEL_TAGS.get(parser);
 
                     // Podcast name found and not set yet
-                    if (tagName.equalsIgnoreCase(RSS.TITLE) && name == null)
-                        name = Html.fromHtml(parser.nextText().trim()).toString();
+                    if (tag == ChannelTag.TITLE && name == null)
+                        setName(parser.nextText().trim(), true);
                     // Explicit info found
-                    else if (tagName.equalsIgnoreCase(RSS.EXPLICIT))
+                    else if (tag == ChannelTag.EXPLICIT)
                         explicit = parseExplicit(parser.nextText());
                     // Image found
-                    else if (tagName.equalsIgnoreCase(RSS.IMAGE))
+                    else if (tag == ChannelTag.IMAGE)
                         parseLogo(parser);
                     // Thumbnail found (used by some podcast instead of image)
-                    else if (tagName.equalsIgnoreCase(RSS.THUMBNAIL) && logoUrl == null)
+                    else if (tag == ChannelTag.THUMBNAIL && logoUrl == null)
                         logoUrl = parser.getAttributeValue("", RSS.URL);
                     // Episode found
-                    else if (tagName.equalsIgnoreCase(RSS.ITEM))
-                        parseEpisode(parser, episodeIndex++);
+                    else if (tag == ChannelTag.ITEM) {
+                        final Episode known = parseEpisode(parser, episodeIndex++,
+                                parsedEpisodes, knownEpisodes);
+                        knownEpisodesInRow = known == null ? 0 : knownEpisodesInRow + 1;
+
+                        // The rest of the feed is known, skip it
+                        if (canStopEarly && knownEpisodesInRow >= KNOWN_EPISODES_TO_STOP) {
+                            appendKnownEpisodes(oldEpisodes, known, parsedEpisodes,
+                                    knownEpisodes);
+                            break;
+                        }
+                    }
                 }
 
                 // Done, get next parsing event
                 eventType = parser.next();
             }
 
-            // Parsing completed without errors, mark as updated
-            lastLoaded = new Date();
-        } catch (XmlPullParserException | IOException e) {
-            // Reset the episode list to its former value
-            this.episodes = oldEpisodes;
-            throw e;
+            // Parsing completed without errors, publish episodes and mark as
+            // updated
+            episodes = Collections.unmodifiableList(parsedEpisodes);
+            lastLoaded = System.currentTimeMillis();
+            updatePublishingCadence();
         } finally {
             // Make sure name is not empty
             if (name == null || name.trim().isEmpty())
-                name = url;
+                setName(url, false);
         }
     }
 
@@ -447,7 +863,21 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         }
     }
 
-    protected void parseEpisode(XmlPullParser parser, int index) {
+    /**
+     * Parse an episode from the feed and add it to the given episode list.
+     * 
+     * @param parser Parser set to the item start tag.
+     * @param index The episode's index in the feed.
+     * @param parsedEpisodes The list of episodes parsed so far to add to.
+     * @param knownEpisodes The episodes known from the last parse by their
+     *            identity, might be <code>null</code>. If the episode is
+     *            found here, the known instance is added instead of the new
+     *            one and removed from the map.
+     * @return The known episode added or <code>null</code> if the episode
+     *         was new or not added at all.
+     */
+    protected Episode parseEpisode(XmlPullParser parser, int index,
+            List<Episode> parsedEpisodes, Map<String, Episode> knownEpisodes) {
         // Create episode and parse the data
         final Episode newEpisode = new Episode(this, index);
 
@@ -456,13 +886,93 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
 
             // Only add if there is a title and some actual content to play
             final String title = newEpisode.getName();
-            if (title != null && !title.isEmpty() && newEpisode.getMediaUrl() != null)
-                episodes.add(newEpisode);
+            if (title != null && !title.isEmpty() && newEpisode.getMediaUrl() != null) {
+                final Episode known = knownEpisodes == null ? null :
+                        knownEpisodes.get(newEpisode.getIdentity());
+
+                // Keep the known instance unless the media moved. Its index
+                // is not updated, the instance might be held in sorted sets
+                // elsewhere. Episodes with equal pubDates and indices still
+                // compare consistently (see Episode#compareTo).
+                if (known != null && known.getMediaUrl().equals(newEpisode.getMediaUrl())) {
+                    knownEpisodes.remove(known.getIdentity());
+                    parsedEpisodes.add(known);
+
+                    return known;
+                } else
+                    parsedEpisodes.add(newEpisode);
+            }
         } catch (XmlPullParserException e) {
             // pass, episode not added
         } catch (IOException e) {
             // pass, episode not added
         }
+
+        return null;
+    }
+
+    /**
+     * Add all the episodes that follow the given one in the former episode
+     * list and have not been added yet.
+     */
+    private void appendKnownEpisodes(List<Episode> oldEpisodes, Episode last,
+            List<Episode> parsedEpisodes, Map<String, Episode> knownEpisodes) {
+        final int position = oldEpisodes.indexOf(last);
+
+        for (Episode episode : oldEpisodes.subList(position + 1, oldEpisodes.size()))
+            if (knownEpisodes.remove(episode.getIdentity()) != null)
+                parsedEpisodes.add(episode);
+    }
+
+    /**
+     * @return Whether all episodes in the given list have a publication date
+     *         and are sorted newest first.
+     */
+    private boolean isNewestFirst(List<Episode> episodeList) {
+        for (int index = 0; index < episodeList.size(); index++) {
+            final long pubDate = episodeList.get(index).getPubDateMillis();
+
+            if (pubDate == DateParser.INVALID || (index > 0 &&
+                    pubDate > episodeList.get(index - 1).getPubDateMillis()))
+                return false;
+        }
+
+        return !episodeList.isEmpty();
+    }
+
+    /**
+     * Learn the publishing cadence from the episodes' publication dates. The
+     * interval is the median time between the most recent episodes. If no
+     * episode has a date, the former values are kept.
+     */
+    protected void updatePublishingCadence() {
+        final List<Episode> episodeList = episodes;
+        final long[] dates = new long[episodeList.size()];
+        int dateCount = 0;
+        for (Episode episode : episodeList)
+            if (episode.getPubDateMillis() != DateParser.INVALID)
+                dates[dateCount++] = episode.getPubDateMillis();
+
+        if (dateCount > 0) {
+            // Oldest first, so the newest date is the last one
+            Arrays.sort(dates, 0, dateCount);
+            newestEpisodeDate = dates[dateCount - 1];
+
+            final long[] gaps = new long[Math.min(dateCount - 1, MAX_CADENCE_SAMPLES)];
+            int gapCount = 0;
+            for (int index = dateCount - 1; index > 0 && gapCount < gaps.length; index--) {
+                final long gap = dates[index] - dates[index - 1];
+
+                // Episodes published at the same time do not tell us much
+                if (gap > 0)
+                    gaps[gapCount++] = gap;
+            }
+
+            if (gapCount > 0) {
+                Arrays.sort(gaps, 0, gapCount);
+                publishingInterval = gaps[gapCount / 2];
+            }
+        }
     }
 
     @Override
@@ -470,11 +980,11 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         // We put some extra bit in here to that only apply to podcast URLs and
         // then call the base class method.
         if (spec != null) {
-            if (spec.toLowerCase(Locale.US).startsWith("feed://") ||
-                    spec.toLowerCase(Locale.US).startsWith("itpc://") ||
-                    spec.toLowerCase(Locale.US).startsWith("itms://"))
+            if (spec.regionMatches(true, 0, "feed://", 0, 7) ||
+                    spec.regionMatches(true, 0, "itpc://", 0, 7) ||
+                    spec.regionMatches(true, 0, "itms://", 0, 7))
                 spec = "http" + spec.substring(4);
-            if (spec.toLowerCase(Locale.US).startsWith("fb:"))
+            if (spec.regionMatches(true, 0, "fb:", 0, 3))
                 spec = "http://feeds.feedburner.com/" + spec.substring(3);
         }
 
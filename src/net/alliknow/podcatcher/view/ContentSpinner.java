@@ -43,6 +43,9 @@ import net.alliknow.podcatcher.model.PodcastManager;
  */
 public class ContentSpinner extends Spinner implements OnItemSelectedListener {
 
+    /** The separator used in the spinner items' subtitles */
+    private static final String SEPARATOR = " • ";
+
     /** The listener call-back to alert on content mode selection */
     private final OnSelectPodcastListener listener;
 
@@ -138,11 +141,18 @@ public class ContentSpinner extends Spinner implements OnItemSelectedListener {
 
                     // Set the subtitle
                     final int podcastCount = PodcastManager.getInstance().size();
+                    final int newCount = EpisodeManager.getInstance().getNewEpisodeCount();
                     if (podcastCount == 0)
                         subtitleView.setText(R.string.podcast_none);
-                    else
+                    else if (newCount == 0)
                         subtitleView.setText(parent.getContext().getResources()
                                 .getQuantityString(R.plurals.podcasts, podcastCount, podcastCount));
+                    else
+                        subtitleView.setText(parent.getContext().getResources()
+                                .getQuantityString(R.plurals.podcasts, podcastCount, podcastCount)
+                                + SEPARATOR + parent.getContext().getResources()
+                                        .getQuantityString(R.plurals.episodes_new, newCount,
+                                                newCount));
                     break;
                 case 2:
                     imageView.setImageResource(R.drawable.ic_menu_download);
@@ -27,6 +27,7 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import net.alliknow.podcatcher.R;
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.types.Episode;
 
 /**
@@ -171,10 +172,10 @@ public class EpisodeListItemView extends PodcatcherListItemView {
         String result = NO_DATE;
 
         // Episode has no date, should not happen
-        if (episode.getPubDate() == null && showPodcastName)
+        if (episode.getPubDateMillis() == DateParser.INVALID && showPodcastName)
             result = episode.getPodcast().getName();
         // This is the interesting case
-        else if (episode.getPubDate() != null) {
+        else if (episode.getPubDateMillis() != DateParser.INVALID) {
             // Get a nice time span string for the age of the episode
             String dateString = Utils.getRelativePubDate(episode);
 
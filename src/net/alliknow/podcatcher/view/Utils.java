@@ -19,6 +19,7 @@ package net.alliknow.podcatcher.view;
 
 import android.text.format.DateUtils;
 
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.types.Episode;
 
 /**
@@ -37,8 +38,8 @@ public class Utils {
      *         publication date cannot be determinated for the episode.
      */
     public static String getRelativePubDate(Episode episode) {
-        if (episode != null && episode.getPubDate() != null) {
-            final long pubTime = episode.getPubDate().getTime();
+        if (episode != null && episode.getPubDateMillis() != DateParser.INVALID) {
+            final long pubTime = episode.getPubDateMillis();
 
             // Get a nice time span string for the age of the episode
             String dateString = DateUtils.getRelativeTimeSpanString(pubTime,
@@ -37,6 +37,7 @@ import android.widget.TextView;
 
 import net.alliknow.podcatcher.R;
 import net.alliknow.podcatcher.listeners.OnDownloadEpisodeListener;
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.view.Utils;
 
@@ -185,7 +186,7 @@ public class EpisodeFragment extends Fragment {
             titleView.setText(currentEpisode.getName());
             subtitleView.setText(currentEpisode.getPodcast().getName());
             // Episode publication data
-            if (showEpisodeDate && currentEpisode.getPubDate() != null)
+            if (showEpisodeDate && currentEpisode.getPubDateMillis() != DateParser.INVALID)
                 subtitleView.setText(subtitleView.getText() + SEPARATOR
                         + Utils.getRelativePubDate(currentEpisode));
             // Episode duration
@@ -33,6 +33,7 @@ import android.widget.TextView;
 
 import net.alliknow.podcatcher.R;
 import net.alliknow.podcatcher.adapters.EpisodeListAdapter;
+import net.alliknow.podcatcher.adapters.EpisodeListDiff;
 import net.alliknow.podcatcher.listeners.EpisodeListContextListener;
 import net.alliknow.podcatcher.listeners.OnReorderEpisodeListener;
 import net.alliknow.podcatcher.listeners.OnReverseSortingListener;
@@ -258,7 +259,7 @@ public class EpisodeListFragment extends PodcatcherListFragment implements Reord
                 // This also set the member
                 setListAdapter(new EpisodeListAdapter(getActivity(), episodeList));
             else
-                ((EpisodeListAdapter) adapter).updateList(episodeList);
+                patchEpisodeList(episodeList);
 
             // Update adapter setting
             ((EpisodeListAdapter) adapter).setShowPodcastNames(showPodcastNames);
@@ -509,6 +510,44 @@ public class EpisodeListFragment extends PodcatcherListFragment implements Reord
         super.showLoadFailed();
     }
 
+    /**
+     * Update the list adapter in place. Rows are only rebound if their episode
+     * changed and the first episode visible stays where it is on screen, unless
+     * the list is scrolled to the very top (so new episodes show up there).
+     * 
+     * @param episodeList The new list of episodes to show.
+     */
+    private void patchEpisodeList(List<Episode> episodeList) {
+        final ListView listView = getListView();
+        final int firstVisiblePosition = listView.getFirstVisiblePosition();
+        final int[] tops = new int[listView.getChildCount()];
+        for (int index = 0; index < tops.length; index++)
+            tops[index] = listView.getChildAt(index).getTop();
+
+        final EpisodeListDiff diff = ((EpisodeListAdapter) adapter).updateList(episodeList);
+
+        if (diff.isStructural()) {
+            // Anchor to the first visible episode that is still in the list
+            if (firstVisiblePosition > 0 || (tops.length > 0 && tops[0] < 0))
+                for (int index = 0; index < tops.length; index++) {
+                    final int newPosition = diff.getNewPosition(firstVisiblePosition + index);
+
+                    if (newPosition >= 0) {
+                        listView.setSelectionFromTop(newPosition, tops[index]);
+                        break;
+                    }
+                }
+        }
+        // Only rebind the rows changed (if visible)
+        else
+            for (int position : diff.getChangedPositions()) {
+                final View row = findListItemViewForIndex(position);
+
+                if (row != null)
+                    adapter.getView(position, row, listView);
+            }
+    }
+
     private List<Episode> getCheckedEpisodes() {
         List<Episode> result = null;
 
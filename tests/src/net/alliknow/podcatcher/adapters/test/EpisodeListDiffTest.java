@@ -0,0 +1,150 @@
+package net.alliknow.podcatcher.adapters.test;
+
+import android.test.InstrumentationTestCase;
+
+import net.alliknow.podcatcher.adapters.EpisodeListDiff;
+import net.alliknow.podcatcher.model.types.Episode;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@SuppressWarnings("javadoc")
+public class EpisodeListDiffTest extends InstrumentationTestCase {
+
+    private static final Podcast PODCAST = new Podcast("Test", "http://example.com/feed");
+
+    class EpisodeForTesting extends Episode {
+
+        public EpisodeForTesting(int index) {
+            super(PODCAST, index);
+
+            this.mediaUrl = "http://example.com/episode" + index + ".mp3";
+        }
+    }
+
+    public final void testSameList() {
+        final List<Episode> episodes = createEpisodes(0, 100);
+
+        EpisodeListDiff diff = new EpisodeListDiff(episodes, episodes);
+        assertTrue(diff.isEmpty());
+        assertFalse(diff.isStructural());
+
+        diff = new EpisodeListDiff(episodes, new ArrayList<>(episodes));
+        assertTrue(diff.isEmpty());
+        for (int position = 0; position < episodes.size(); position++) {
+            assertEquals(position, diff.getNewPosition(position));
+            assertEquals(position, diff.getOldPosition(position));
+        }
+    }
+
+    public final void testChanged() {
+        final List<Episode> episodes = createEpisodes(0, 10);
+        final List<Episode> reloaded = new ArrayList<>(episodes);
+        reloaded.set(3, new EpisodeForTesting(3));
+        reloaded.set(7, new EpisodeForTesting(7));
+
+        final EpisodeListDiff diff = new EpisodeListDiff(episodes, reloaded);
+        assertFalse(diff.isEmpty());
+        assertFalse(diff.isStructural());
+        assertTrue(Arrays.equals(new int[] {
+                3, 7
+        }, diff.getChangedPositions()));
+    }
+
+    public final void testInsertAndRemove() {
+        final List<Episode> episodes = createEpisodes(10, 100);
+        final List<Episode> updated = new ArrayList<>(createEpisodes(0, 10));
+        updated.addAll(episodes.subList(0, 80));
+
+        final EpisodeListDiff diff = new EpisodeListDiff(episodes, updated);
+        assertTrue(diff.isStructural());
+        assertEquals(10, diff.getInsertedCount());
+        assertEquals(20, diff.getRemovedCount());
+        assertEquals(0, diff.getMovedCount());
+        assertEquals(0, diff.getChangedPositions().length);
+        assertEquals(10, diff.getNewPosition(0));
+        assertEquals(-1, diff.getNewPosition(85));
+        assertEquals(-1, diff.getOldPosition(5));
+        assertEquals(79, diff.getOldPosition(89));
+    }
+
+    public final void testMove() {
+        final List<Episode> episodes = createEpisodes(0, 10);
+        final List<Episode> moved = new ArrayList<>(episodes);
+        moved.add(0, moved.remove(5));
+
+        EpisodeListDiff diff = new EpisodeListDiff(episodes, moved);
+        assertTrue(diff.isStructural());
+        assertEquals(1, diff.getMovedCount());
+        assertEquals(0, diff.getNewPosition(5));
+
+        final List<Episode> reversed = new ArrayList<>(episodes);
+        Collections.reverse(reversed);
+        diff = new EpisodeListDiff(episodes, reversed);
+        assertEquals(9, diff.getMovedCount());
+    }
+
+    public final void testDuplicates() {
+        final List<Episode> episodes = createEpisodes(0, 5);
+        episodes.add(2, new EpisodeForTesting(4));
+        final List<Episode> updated = new ArrayList<>(episodes);
+        updated.remove(episodes.size() - 1);
+
+        final EpisodeListDiff diff = new EpisodeListDiff(episodes, updated);
+        assertEquals(0, diff.getInsertedCount());
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(0, diff.getMovedCount());
+        assertEquals(2, diff.getNewPosition(2));
+        assertEquals(-1, diff.getNewPosition(5));
+    }
+
+    public final void testRandom() {
+        final Random random = new Random(42);
+        final List<Episode> pool = createEpisodes(0, 5000);
+
+        for (int run = 0; run < 100; run++) {
+            final List<Episode> episodes = sample(pool, random);
+            final List<Episode> updated = sample(pool, random);
+            if (random.nextBoolean())
+                Collections.shuffle(updated.subList(0, updated.size() / 10), random);
+
+            final EpisodeListDiff diff = new EpisodeListDiff(episodes, updated);
+            assertEquals(updated.size(),
+                    episodes.size() - diff.getRemovedCount() + diff.getInsertedCount());
+
+            for (int position = 0; position < updated.size(); position++) {
+                final int oldPosition = diff.getOldPosition(position);
+
+                if (oldPosition < 0)
+                    assertFalse(episodes.contains(updated.get(position)));
+                else {
+                    assertSame(episodes.get(oldPosition), updated.get(position));
+                    assertEquals(position, diff.getNewPosition(oldPosition));
+                }
+            }
+        }
+    }
+
+    private List<Episode> sample(List<Episode> pool, Random random) {
+        final List<Episode> result = new ArrayList<>();
+
+        for (Episode episode : pool)
+            if (random.nextInt(10) > 2)
+                result.add(episode);
+
+        return result;
+    }
+
+    private List<Episode> createEpisodes(int first, int count) {
+        final List<Episode> episodes = new ArrayList<>(count);
+
+        for (int index = first; index < first + count; index++)
+            episodes.add(new EpisodeForTesting(index));
+
+        return episodes;
+    }
+}
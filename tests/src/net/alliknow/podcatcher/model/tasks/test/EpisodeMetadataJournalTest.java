@@ -0,0 +1,276 @@
+package net.alliknow.podcatcher.model.tasks.test;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import net.alliknow.podcatcher.model.EpisodeManager;
+import net.alliknow.podcatcher.model.tasks.LoadEpisodeMetadataTask;
+import net.alliknow.podcatcher.model.tasks.StoreEpisodeMetadataTask;
+import net.alliknow.podcatcher.model.types.EpisodeMetadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@SuppressWarnings("javadoc")
+public class EpisodeMetadataJournalTest extends InstrumentationTestCase {
+
+    private static final String EPISODE_URL = "http://example.com/episode";
+
+    private Context context;
+    private File snapshot;
+    private File journal;
+    private File legacy;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // Make sure we do not touch the app's files
+        context = new RenamingDelegatingContext(getInstrumentation().getTargetContext(),
+                "test_journal_");
+        snapshot = context.getFileStreamPath(EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+        journal = context.getFileStreamPath(EpisodeManager.METADATA_JOURNAL_FILENAME);
+        legacy = context.getFileStreamPath(EpisodeManager.METADATA_FILENAME);
+
+        context.deleteFile(EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+        context.deleteFile(EpisodeManager.METADATA_JOURNAL_FILENAME);
+        context.deleteFile(EpisodeManager.METADATA_FILENAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        context.deleteFile(EpisodeManager.METADATA_SNAPSHOT_FILENAME);
+        context.deleteFile(EpisodeManager.METADATA_JOURNAL_FILENAME);
+        context.deleteFile(EpisodeManager.METADATA_FILENAME);
+
+        super.tearDown();
+    }
+
+    public final void testStoreAndLoad() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(100);
+
+        // The first store writes the snapshot
+        store(metadata);
+        assertTrue(snapshot.exists());
+        assertTrue(journal.exists());
+        final long snapshotLength = snapshot.length();
+        final long journalLength = journal.length();
+
+        // Changes only go to the journal
+        metadata.get(EPISODE_URL + 1).resumeAt = 4711;
+        metadata.get(EPISODE_URL + 2).isOld = null;
+        metadata.get(EPISODE_URL + 2).resumeAt = null;
+        metadata.put(EPISODE_URL + "new", createRecord("new"));
+        store(metadata, EPISODE_URL + 1, EPISODE_URL + 2, EPISODE_URL + "new");
+        assertEquals(snapshotLength, snapshot.length());
+        assertTrue(journal.length() > journalLength);
+
+        final Map<String, EpisodeMetadata> loaded = load();
+        assertEquals(100, loaded.size());
+        assertEquals(Integer.valueOf(4711), loaded.get(EPISODE_URL + 1).resumeAt);
+        assertNull(loaded.get(EPISODE_URL + 2));
+        assertEquals("Episode new", loaded.get(EPISODE_URL + "new").episodeName);
+        assertEquals(Boolean.TRUE, loaded.get(EPISODE_URL + 3).isOld);
+    }
+
+    public final void testCompact() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        store(metadata);
+        final String firstJournal = read(journal);
+
+        // Write the same records over and over, the journal is compacted once
+        // it gets too large and it should never grow beyond the minimum
+        boolean compacted = false;
+        for (int run = 0; run < 1000 && !compacted; run++) {
+            metadata.get(EPISODE_URL + 1).resumeAt = run;
+            store(metadata, metadata.keySet().toArray(new String[0]));
+
+            compacted = read(journal).length() < 1024;
+        }
+        assertTrue(compacted);
+        assertFalse(firstJournal.equals(read(journal)));
+        assertEquals(metadata.get(EPISODE_URL + 1).resumeAt, load().get(EPISODE_URL + 1).resumeAt);
+    }
+
+    public final void testStaleJournal() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        store(metadata);
+        metadata.get(EPISODE_URL + 1).resumeAt = 1;
+        store(metadata, EPISODE_URL + 1);
+        final String staleJournal = read(journal);
+
+        // Simulate the app stopping after the new snapshot is written, but
+        // before the new journal is in place
+        metadata.get(EPISODE_URL + 1).resumeAt = 2;
+        new StoreEpisodeMetadataTaskForTesting(context, metadata).compactNow();
+        write(journal, staleJournal);
+
+        assertEquals(Integer.valueOf(2), load().get(EPISODE_URL + 1).resumeAt);
+        assertFalse(journal.exists());
+    }
+
+    public final void testBrokenJournal() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        store(metadata);
+        metadata.get(EPISODE_URL + 1).resumeAt = 1;
+        store(metadata, EPISODE_URL + 1);
+        metadata.get(EPISODE_URL + 2).resumeAt = 2;
+        store(metadata, EPISODE_URL + 2);
+
+        // Simulate the app stopping while appending to the journal
+        final String content = read(journal);
+        write(journal, content.substring(0, content.length() - 20));
+
+        final Map<String, EpisodeMetadata> loaded = load();
+        assertEquals(Integer.valueOf(1), loaded.get(EPISODE_URL + 1).resumeAt);
+        assertEquals(Integer.valueOf(42), loaded.get(EPISODE_URL + 2).resumeAt);
+
+        // The journal starts over and works
+        assertTrue(read(journal).length() < content.length());
+        loaded.get(EPISODE_URL + 3).resumeAt = 3;
+        store(loaded, EPISODE_URL + 3);
+        assertEquals(Integer.valueOf(1), load().get(EPISODE_URL + 1).resumeAt);
+        assertEquals(Integer.valueOf(3), load().get(EPISODE_URL + 3).resumeAt);
+    }
+
+    public final void testCorruptSnapshot() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        store(metadata);
+        metadata.get(EPISODE_URL + 1).resumeAt = 1;
+        store(metadata, EPISODE_URL + 1);
+
+        // The journal is all that is left, its records are recovered
+        write(snapshot, "garbage");
+        final Map<String, EpisodeMetadata> loaded = load();
+        assertEquals(1, loaded.size());
+        assertEquals(Integer.valueOf(1), loaded.get(EPISODE_URL + 1).resumeAt);
+
+        // A new snapshot was written, the journal works on top of it
+        loaded.get(EPISODE_URL + 1).resumeAt = 2;
+        store(loaded, EPISODE_URL + 1);
+        assertEquals(Integer.valueOf(2), load().get(EPISODE_URL + 1).resumeAt);
+    }
+
+    @SuppressWarnings("unchecked")
+    public final void testForceCompact() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        store(metadata);
+        metadata.get(EPISODE_URL + 1).resumeAt = 1;
+        store(metadata, EPISODE_URL + 1);
+
+        // Simulate an append failing halfway
+        final String content = read(journal);
+        write(journal, content + content.substring(content.indexOf("<metadata"),
+                content.length() - 20));
+
+        // The retry must not append after the broken record
+        metadata.get(EPISODE_URL + 2).resumeAt = 2;
+        final StoreEpisodeMetadataTask task = new StoreEpisodeMetadataTask(context, null, metadata);
+        task.setForceCompact(true);
+        task.execute(new HashSet<>(Arrays.asList(EPISODE_URL + 2))).get();
+
+        final Map<String, EpisodeMetadata> loaded = load();
+        assertEquals(Integer.valueOf(1), loaded.get(EPISODE_URL + 1).resumeAt);
+        assertEquals(Integer.valueOf(2), loaded.get(EPISODE_URL + 2).resumeAt);
+    }
+
+    public final void testMigrate() throws Exception {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(10);
+        metadata.get(EPISODE_URL + 1).episodeDescription = "Tom & Jerry <3";
+
+        // The XML export has the format of the old metadata file
+        new StoreEpisodeMetadataTask(context, null, metadata).exportXml(legacy);
+        assertTrue(read(legacy).contains("Tom &amp; Jerry &lt;3"));
+
+        final Map<String, EpisodeMetadata> loaded = load();
+        assertEquals(10, loaded.size());
+        assertEquals("Tom & Jerry <3", loaded.get(EPISODE_URL + 1).episodeDescription);
+        assertEquals("Episode 2", loaded.get(EPISODE_URL + 2).episodeName);
+
+        // Migrated once, the journal works on top of the new snapshot
+        assertFalse(legacy.exists());
+        assertTrue(snapshot.exists());
+        loaded.get(EPISODE_URL + 3).resumeAt = 3;
+        store(loaded, EPISODE_URL + 3);
+        assertEquals(Integer.valueOf(3), load().get(EPISODE_URL + 3).resumeAt);
+        assertEquals("Tom & Jerry <3", load().get(EPISODE_URL + 1).episodeDescription);
+    }
+
+    private static class StoreEpisodeMetadataTaskForTesting extends StoreEpisodeMetadataTask {
+
+        public StoreEpisodeMetadataTaskForTesting(Context context,
+                Map<String, EpisodeMetadata> metadata) {
+            super(context, null, metadata);
+        }
+
+        public void compactNow() {
+            // The first store without a journal compacts
+            context.deleteFile(EpisodeManager.METADATA_JOURNAL_FILENAME);
+            doInBackground(new HashSet<String>());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void store(Map<String, EpisodeMetadata> metadata, String... keys) throws Exception {
+        new StoreEpisodeMetadataTask(context, null, metadata)
+                .execute(new HashSet<>(Arrays.asList(keys))).get();
+    }
+
+    private Map<String, EpisodeMetadata> load() throws Exception {
+        return new LoadEpisodeMetadataTask(context, null).execute((Void) null).get();
+    }
+
+    private Map<String, EpisodeMetadata> createMetadata(int count) {
+        final Map<String, EpisodeMetadata> metadata = new ConcurrentHashMap<>();
+
+        for (int index = 0; index < count; index++)
+            metadata.put(EPISODE_URL + index, createRecord(String.valueOf(index)));
+
+        return metadata;
+    }
+
+    private EpisodeMetadata createRecord(String name) {
+        final EpisodeMetadata record = new EpisodeMetadata();
+        record.episodeName = "Episode " + name;
+        record.podcastName = "Podcast";
+        record.podcastUrl = "http://example.com/feed";
+        record.isOld = true;
+        record.resumeAt = 42;
+
+        return record;
+    }
+
+    private String read(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        final byte[] buffer = new byte[(int) file.length()];
+
+        try {
+            int read = 0;
+            while (read < buffer.length)
+                read += in.read(buffer, read, buffer.length - read);
+        } finally {
+            in.close();
+        }
+
+        return new String(buffer, "UTF-8");
+    }
+
+    private void write(File file, String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
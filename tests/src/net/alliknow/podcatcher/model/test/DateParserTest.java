@@ -0,0 +1,104 @@
+package net.alliknow.podcatcher.model.test;
+
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import net.alliknow.podcatcher.model.DateParser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+@SuppressWarnings("javadoc")
+public class DateParserTest extends InstrumentationTestCase {
+
+    private static final String[] FEED_DATES = {
+            "Sun, 17 Nov 2013 00:00:00 -0600",
+            "Sun, 3 Nov 2013 00:00:00 -0500",
+            "Mon, 04 Nov 2013 09:30:15 EST",
+            "Mon, 04 Nov 2013 09:30:15 GMT",
+            "Mon, 04 Nov 13 09:30:15 +0000",
+            "Tue, 05 Nov 2013 12:00:00 PDT",
+            "Tue, 05 Nov 2013 12:00:00 CET",
+            "Fri, 05 Jul 2013 12:00:00 CEST",
+            "Tue, 05 Nov 2013 12:00:00 GMT+01:00",
+            "Thu, 29 Feb 2024 23:59:59 +0530",
+            "Tue, 05 Nov 2013",
+            "2013-11-17",
+            "13-11-17"
+    };
+
+    private static final int BENCHMARK_RUNS = 20000;
+
+    public final void testParseLikeLegacy() {
+        for (String date : FEED_DATES)
+            assertEquals(date, legacyParse(date), DateParser.parseDate(date));
+    }
+
+    public final void testParseIso() {
+        assertEquals(1384683630000l, DateParser.parse("2013-11-17T10:20:30Z"));
+        assertEquals(1384683630000l, DateParser.parse("2013-11-17T10:20:30.123z"));
+        assertEquals(1384683630000l, DateParser.parse("2013-11-17T12:20:30+02:00"));
+        assertEquals(1384683630000l, DateParser.parse("2013-11-17 05:20:30-0500"));
+        assertEquals(1384683630000l, DateParser.parse("Sun, 17 Nov 2013 10:20:30 Z"));
+        assertEquals(1384683630000l, DateParser.parse("17 Nov 2013 10:20:30 UT"));
+    }
+
+    public final void testParseInvalid() {
+        assertEquals(DateParser.INVALID, DateParser.parse(null));
+        assertEquals(DateParser.INVALID, DateParser.parse(""));
+        assertEquals(DateParser.INVALID, DateParser.parse("   "));
+        assertEquals(DateParser.INVALID, DateParser.parse("Bla"));
+        assertEquals(DateParser.INVALID, DateParser.parse("Sun, 17 Nox 2013 00:00:00 GMT"));
+        assertEquals(DateParser.INVALID, DateParser.parse("Sun, 17 Nov 2013 25:00:00 GMT"));
+        assertEquals(DateParser.INVALID, DateParser.parse("2013-13-17"));
+        assertNull(DateParser.parseDate("Bla"));
+    }
+
+    @LargeTest
+    public final void testBenchmark() {
+        // Warm up
+        for (String date : FEED_DATES) {
+            DateParser.parse(date);
+            legacyParse(date);
+        }
+
+        long start = System.nanoTime();
+        for (int run = 0; run < BENCHMARK_RUNS; run++)
+            DateParser.parse(FEED_DATES[run % FEED_DATES.length]);
+        final long parserTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int run = 0; run < BENCHMARK_RUNS; run++)
+            legacyParse(FEED_DATES[run % FEED_DATES.length]);
+        final long legacyTime = System.nanoTime() - start;
+
+        Log.d(Utils.TEST_STATUS, "Date parsing: " + parserTime / BENCHMARK_RUNS
+                + "ns per date, legacy parsing: " + legacyTime / BENCHMARK_RUNS + "ns per date");
+    }
+
+    /** The implementation formerly used by FeedEntity */
+    private static final SimpleDateFormat LEGACY_FORMATTER =
+            new SimpleDateFormat("EEE, dd MMM yy HH:mm:ss zzz", Locale.US);
+
+    private static Date legacyParse(String dateString) {
+        try {
+            synchronized (LEGACY_FORMATTER) {
+                return LEGACY_FORMATTER.parse(dateString);
+            }
+        } catch (ParseException e) {
+            for (String format : new String[] {
+                    "EEE, dd MMM yy", "yy-MM-dd"
+            })
+                try {
+                    return new SimpleDateFormat(format, Locale.US).parse(dateString);
+                } catch (ParseException e1) {
+                    // Does not fit the format, pass and try next
+                }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package net.alliknow.podcatcher.model.test;
+
+import android.test.InstrumentationTestCase;
+
+import net.alliknow.podcatcher.model.EpisodeListMerger;
+import net.alliknow.podcatcher.model.types.Episode;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+@SuppressWarnings("javadoc")
+public class EpisodeListMergerTest extends InstrumentationTestCase {
+
+    class EpisodeForTesting extends Episode {
+
+        public EpisodeForTesting(Podcast podcast, int index, long pubDate) {
+            super(podcast, index);
+
+            this.mediaUrl = podcast.getUrl() + "/episode" + index + ".mp3";
+            this.pubDate = pubDate;
+        }
+    }
+
+    public final void testSort() {
+        final List<Episode> episodes = createEpisodes(
+                new Podcast("Test", "http://example.com/test"), 0, 100, new Random(42));
+        assertSame(episodes, EpisodeListMerger.sort(episodes));
+
+        final List<Episode> shuffled = new ArrayList<>(episodes);
+        Collections.shuffle(shuffled, new Random(42));
+        final List<Episode> copy = new ArrayList<>(shuffled);
+
+        final List<Episode> sorted = EpisodeListMerger.sort(shuffled);
+        assertNotSame(shuffled, sorted);
+        assertEquals(episodes, sorted);
+        assertEquals(copy, shuffled);
+    }
+
+    public final void testMerge() {
+        final Random random = new Random(42);
+        final List<List<Episode>> lists = new ArrayList<>();
+        final SortedSet<Episode> expected = new TreeSet<>();
+
+        for (int index = 0; index < 50; index++) {
+            final List<Episode> episodes = createEpisodes(
+                    new Podcast("Podcast " + index, "http://example.com/" + index),
+                    index, random.nextInt(200), random);
+
+            lists.add(episodes);
+            expected.addAll(episodes);
+        }
+        // Special episodes are also part of their podcast's list
+        final List<Episode> special = new ArrayList<>();
+        for (int index = 0; index < 10; index++)
+            if (!lists.get(index).isEmpty())
+                special.add(lists.get(index).get(0));
+        lists.add(EpisodeListMerger.sort(special));
+        lists.add(new ArrayList<Episode>());
+
+        assertEquals(new ArrayList<>(expected), EpisodeListMerger.merge(lists));
+    }
+
+    public final void testMergeDuplicates() {
+        final Podcast podcast = new Podcast("Test", "http://example.com/test");
+        final Podcast another = new Podcast("Another", "http://example.com/another");
+
+        // The same episode with a different date, e.g. from an older load
+        final List<Episode> first = new ArrayList<>();
+        first.add(new EpisodeForTesting(podcast, 1, 3000));
+        first.add(new EpisodeForTesting(podcast, 0, 1000));
+        final List<Episode> second = new ArrayList<>();
+        second.add(new EpisodeForTesting(another, 0, 2500));
+        second.add(new EpisodeForTesting(podcast, 0, 2000));
+
+        final List<List<Episode>> lists = new ArrayList<>();
+        lists.add(first);
+        lists.add(second);
+
+        final List<Episode> merged = EpisodeListMerger.merge(lists);
+        assertEquals(3, merged.size());
+        assertSame(first.get(0), merged.get(0));
+        assertSame(second.get(0), merged.get(1));
+        assertSame(second.get(1), merged.get(2));
+    }
+
+    public final void testMergeNone() {
+        assertTrue(EpisodeListMerger.merge(new ArrayList<List<Episode>>()).isEmpty());
+    }
+
+    private List<Episode> createEpisodes(Podcast podcast, int offset, int count,
+            Random random) {
+        final List<Episode> episodes = new ArrayList<>(count);
+
+        // Newest first, as in most feeds, some of them sharing a date (but
+        // only within the podcast, the offset keeps podcasts apart)
+        long pubDate = 1400000000000l + offset;
+        for (int index = 0; index < count; index++) {
+            episodes.add(new EpisodeForTesting(podcast, index, pubDate));
+            pubDate -= random.nextInt(3) * 3600000l;
+        }
+
+        return episodes;
+    }
+}
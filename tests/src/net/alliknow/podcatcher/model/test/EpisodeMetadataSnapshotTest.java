@@ -0,0 +1,182 @@
+package net.alliknow.podcatcher.model.test;
+
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import net.alliknow.podcatcher.model.DateParser;
+import net.alliknow.podcatcher.model.EpisodeMetadataSnapshot;
+import net.alliknow.podcatcher.model.types.EpisodeMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@SuppressWarnings("javadoc")
+public class EpisodeMetadataSnapshotTest extends InstrumentationTestCase {
+
+    private static final String EPISODE_URL = "http://example.com/episode";
+    private static final String JOURNAL_ID = "4711";
+
+    public final void testWriteAndRead() throws IOException {
+        final Map<String, EpisodeMetadata> metadata = new HashMap<>();
+
+        final EpisodeMetadata full = new EpisodeMetadata();
+        full.downloadId = 123456789012L;
+        full.filePath = "/sdcard/Podcasts/Ümläüts/episode.mp3";
+        full.resumeAt = 0;
+        full.isOld = false;
+        full.playlistPosition = -1;
+        full.podcastName = "Podcast";
+        full.podcastUrl = "http://example.com/feed";
+        full.episodeName = "Tom & Jerry";
+        full.episodePubDate = -1000;
+        full.episodeDescription = "";
+        metadata.put(EPISODE_URL + "full", full);
+
+        final EpisodeMetadata state = new EpisodeMetadata();
+        state.isOld = true;
+        state.resumeAt = Integer.MAX_VALUE;
+        metadata.put(EPISODE_URL + "state", state);
+
+        // Records without data are not written
+        metadata.put(EPISODE_URL + "empty", new EpisodeMetadata());
+
+        final Map<String, EpisodeMetadata> result = new HashMap<>();
+        assertEquals(JOURNAL_ID, EpisodeMetadataSnapshot.read(write(metadata, JOURNAL_ID), result));
+        assertEquals(2, result.size());
+
+        final EpisodeMetadata readFull = result.get(EPISODE_URL + "full");
+        assertEquals(full.downloadId, readFull.downloadId);
+        assertEquals(full.filePath, readFull.filePath);
+        assertEquals(full.resumeAt, readFull.resumeAt);
+        assertEquals(full.isOld, readFull.isOld);
+        assertEquals(full.playlistPosition, readFull.playlistPosition);
+        assertEquals(full.podcastName, readFull.podcastName);
+        assertEquals(full.podcastUrl, readFull.podcastUrl);
+        assertEquals(full.episodeName, readFull.episodeName);
+        assertEquals(full.episodePubDate, readFull.episodePubDate);
+        assertEquals(full.episodeDescription, readFull.episodeDescription);
+
+        final EpisodeMetadata readState = result.get(EPISODE_URL + "state");
+        assertEquals(Boolean.TRUE, readState.isOld);
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), readState.resumeAt);
+        assertNull(readState.downloadId);
+        assertNull(readState.filePath);
+        assertNull(readState.playlistPosition);
+        assertNull(readState.podcastName);
+        assertNull(readState.podcastUrl);
+        assertNull(readState.episodeName);
+        assertEquals(DateParser.INVALID, readState.episodePubDate);
+        assertNull(readState.episodeDescription);
+
+        assertNull(EpisodeMetadataSnapshot.read(write(metadata, null), result));
+    }
+
+    public final void testStringTable() throws IOException {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(1000);
+        final ByteBuffer buffer = write(metadata, JOURNAL_ID);
+
+        // The podcast URL is only written once, the records refer to it
+        final Map<String, EpisodeMetadata> withoutUrls = createMetadata(1000);
+        for (EpisodeMetadata record : withoutUrls.values())
+            record.podcastUrl = null;
+        assertTrue(buffer.remaining() - write(withoutUrls, JOURNAL_ID).remaining() < 2 * 1000);
+
+        final Map<String, EpisodeMetadata> result = new HashMap<>();
+        EpisodeMetadataSnapshot.read(buffer, result);
+        assertEquals(1000, result.size());
+        assertSame(result.get(EPISODE_URL + 1).podcastUrl, result.get(EPISODE_URL + 2).podcastUrl);
+        assertEquals("Podcast 7", result.get(EPISODE_URL + 7).podcastName);
+    }
+
+    public final void testCorrupt() throws IOException {
+        final ByteBuffer buffer = write(createMetadata(10), JOURNAL_ID);
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        // Every truncated snapshot is detected
+        for (int length = 0; length < bytes.length; length++)
+            try {
+                EpisodeMetadataSnapshot.read(ByteBuffer.wrap(bytes, 0, length),
+                        new HashMap<String, EpisodeMetadata>());
+                fail("Truncated snapshot should not read");
+            } catch (IOException e) {
+                // Expected
+            }
+
+        // Other versions are not read
+        bytes[7]++;
+        try {
+            EpisodeMetadataSnapshot.read(ByteBuffer.wrap(bytes),
+                    new HashMap<String, EpisodeMetadata>());
+            fail("Unknown version should not read");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @LargeTest
+    public final void testBenchmark() throws IOException {
+        final Map<String, EpisodeMetadata> metadata = createMetadata(20000);
+        final File file = new File(getInstrumentation().getTargetContext().getCacheDir(),
+                "test_episodes.dat");
+
+        try {
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                EpisodeMetadataSnapshot.write(out, metadata, JOURNAL_ID);
+            } finally {
+                out.close();
+            }
+
+            // Warm up
+            EpisodeMetadataSnapshot.read(file, new ConcurrentHashMap<String, EpisodeMetadata>());
+
+            final Map<String, EpisodeMetadata> result = new ConcurrentHashMap<>();
+            final long start = System.nanoTime();
+            EpisodeMetadataSnapshot.read(file, result);
+            final long time = System.nanoTime() - start;
+
+            Log.d(Utils.TEST_STATUS, "Episode metadata snapshot: " + file.length()
+                    + " bytes for " + metadata.size() + " records read in " + time / 1000000
+                    + "ms");
+            assertEquals(metadata.size(), result.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private ByteBuffer write(Map<String, EpisodeMetadata> metadata, String journalId)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EpisodeMetadataSnapshot.write(out, metadata, journalId);
+
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private Map<String, EpisodeMetadata> createMetadata(int count) {
+        final Map<String, EpisodeMetadata> metadata = new HashMap<>();
+
+        for (int index = 0; index < count; index++) {
+            final EpisodeMetadata record = new EpisodeMetadata();
+            record.episodeName = "Episode " + index;
+            record.episodePubDate = 1388534400000L + index * 3600000L;
+            record.podcastName = "Podcast " + index % 10;
+            record.podcastUrl = "http://example.com/feed";
+            record.isOld = index % 2 == 0;
+            record.resumeAt = index * 1000;
+
+            metadata.put(EPISODE_URL + index, record);
+        }
+
+        return metadata;
+    }
+}
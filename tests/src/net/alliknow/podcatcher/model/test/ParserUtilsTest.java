@@ -0,0 +1,118 @@
+package net.alliknow.podcatcher.model.test;
+
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.tags.RSS;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+@SuppressWarnings("javadoc")
+public class ParserUtilsTest extends InstrumentationTestCase {
+
+    private static final String FEED = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<rss xmlns:content=\"" + RSS.CONTENT_NAMESPACE + "\"><channel>"
+            + "<title>Test</title><item><title>Episode</title>"
+            + "<content:encoded>Content</content:encoded></item></channel></rss>";
+
+    private static final int BENCHMARK_RUNS = 1000;
+
+    public final void testGetParser() throws XmlPullParserException, IOException {
+        final XmlPullParser parser = ParserUtils.getParser(true);
+        assertSame(parser, ParserUtils.getParser(true));
+        assertNotSame(parser, ParserUtils.getParser(false));
+        assertTrue(parser.getFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES));
+        assertFalse(ParserUtils.getParser(false).getFeature(
+                XmlPullParser.FEATURE_PROCESS_NAMESPACES));
+
+        // Reused parsers start over on new input
+        for (int run = 0; run < 3; run++) {
+            parser.setInput(new StringReader(FEED));
+            // The namespace prefix is not part of the name
+            assertEquals(1, countTags(parser, "encoded"));
+            ParserUtils.releaseParser(parser);
+        }
+    }
+
+    public final void testGetParserPerThread() throws InterruptedException,
+            XmlPullParserException {
+        final XmlPullParser[] otherParser = new XmlPullParser[1];
+        final Thread thread = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    otherParser[0] = ParserUtils.getParser(true);
+                } catch (XmlPullParserException e) {
+                    // Checked below
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotNull(otherParser[0]);
+        assertNotSame(otherParser[0], ParserUtils.getParser(true));
+    }
+
+    @LargeTest
+    public final void testBenchmark() throws XmlPullParserException, IOException {
+        // Warm up
+        parseWithNewParser();
+        parseWithCachedParser();
+
+        long start = System.nanoTime();
+        for (int run = 0; run < BENCHMARK_RUNS; run++)
+            parseWithCachedParser();
+        final long cachedTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int run = 0; run < BENCHMARK_RUNS; run++)
+            parseWithNewParser();
+        final long newTime = System.nanoTime() - start;
+
+        Log.d(Utils.TEST_STATUS, "Cached parser: " + cachedTime / BENCHMARK_RUNS
+                + "ns per feed, new parser: " + newTime / BENCHMARK_RUNS + "ns per feed, saving "
+                + (newTime - cachedTime) / BENCHMARK_RUNS + "ns per feed");
+    }
+
+    private static void parseWithCachedParser() throws XmlPullParserException, IOException {
+        final XmlPullParser parser = ParserUtils.getParser(true);
+        parser.setInput(new StringReader(FEED));
+
+        countTags(parser, "item");
+        ParserUtils.releaseParser(parser);
+    }
+
+    private static void parseWithNewParser() throws XmlPullParserException, IOException {
+        // This is what the load tasks formerly did for each file
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(FEED));
+
+        countTags(parser, "item");
+    }
+
+    private static int countTags(XmlPullParser parser, String name)
+            throws XmlPullParserException, IOException {
+        int count = 0;
+        int eventType = parser.getEventType();
+
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && name.equals(parser.getName()))
+                count++;
+
+            eventType = parser.next();
+        }
+
+        return count;
+    }
+}
@@ -2,7 +2,9 @@
 package net.alliknow.podcatcher.model.types.test;
 
 import android.test.InstrumentationTestCase;
+import android.text.Html;
 
+import net.alliknow.podcatcher.model.DateParser;
 import net.alliknow.podcatcher.model.test.Utils;
 import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.Podcast;
@@ -19,11 +21,12 @@ public class EpisodeTest extends InstrumentationTestCase {
         }
 
         public void setPubDate(Date date) {
-            this.pubDate = date;
+            this.pubDate = date.getTime();
         }
 
         public Date parsePubDate(String dateString) {
-            return parseDate(dateString);
+            final long time = parseDate(dateString);
+            return time == DateParser.INVALID ? null : new Date(time);
         }
 
         @Override
@@ -34,6 +37,10 @@ public class EpisodeTest extends InstrumentationTestCase {
         public void setDuration(int duration) {
             this.duration = duration;
         }
+
+        public void setHtmlName(String name) {
+            setName(name, true);
+        }
     }
 
     public final void testCompareTo() {
@@ -46,6 +53,10 @@ public class EpisodeTest extends InstrumentationTestCase {
         first.setPubDate(one);
         EpisodeForTesting second = new EpisodeForTesting(dummy, 2);
 
+        assertEquals(100, first.getPubDateMillis());
+        assertEquals(one, first.getPubDate());
+        assertEquals(DateParser.INVALID, second.getPubDateMillis());
+        assertNull(second.getPubDate());
         assertTrue(first.compareTo(second) > 0);
         assertTrue(second.compareTo(first) < 0);
 
@@ -79,6 +90,29 @@ public class EpisodeTest extends InstrumentationTestCase {
                 date.before(new Date(new Date().getTime() + 1000 * 60 * 60 * 24 * 7));
     }
 
+    public final void testGetName() {
+        final String[] names = {
+                "", "Episode 1", "Episode 1 ", " Episode 1", "Episode  1", "Episode\n1",
+                "Episode\t1", "Tom &amp; Jerry", "Tom & Jerry", "Tom &#38; Jerry",
+                "<b>Bold</b> title", "1 < 2 > 0", "Caf&eacute; Ol&eacute;", "Ümläüts ßüper",
+                "Episode #14: \"Quotes\" and 'more'"
+        };
+
+        Podcast dummy = new Podcast(null, null);
+        for (String name : names) {
+            EpisodeForTesting e = new EpisodeForTesting(dummy, 1);
+            e.setHtmlName(name);
+
+            assertEquals(Html.fromHtml(name).toString(), e.getName());
+            // Decoded names are cached
+            assertSame(e.getName(), e.getName());
+        }
+
+        EpisodeForTesting e = new EpisodeForTesting(dummy, 1);
+        e.setHtmlName(null);
+        assertNull(e.getName());
+    }
+
     public final void testParseDuration() {
         Podcast dummy = new Podcast(null, null);
         EpisodeForTesting e = new EpisodeForTesting(dummy, 1);
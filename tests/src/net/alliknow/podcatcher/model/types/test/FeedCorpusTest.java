@@ -0,0 +1,160 @@
+package net.alliknow.podcatcher.model.types.test;
+
+import android.test.InstrumentationTestCase;
+
+import net.alliknow.podcatcher.model.ParserUtils;
+import net.alliknow.podcatcher.model.types.Episode;
+import net.alliknow.podcatcher.model.types.Podcast;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Parses the feeds recorded in the test project's assets, so these tests do
+ * not need network access. The same corpus is used by the benchmarks project.
+ */
+@SuppressWarnings("javadoc")
+public class FeedCorpusTest extends InstrumentationTestCase {
+
+    public final void testSmall() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse("small.xml");
+
+        assertEquals("Small Talk", podcast.getName());
+        assertEquals("http://smalltalk.example.com/logo.png", podcast.getLogoUrl());
+        assertEquals(3, podcast.getEpisodeCount());
+
+        final List<Episode> episodes = podcast.getEpisodes();
+        assertEquals("Episode 3: The Weather", episodes.get(0).getName());
+        assertEquals("Episode 2: Sports & Games", episodes.get(1).getName());
+        assertEquals("http://media.example.com/smalltalk/episode2.mp3",
+                episodes.get(1).getMediaUrl());
+        assertEquals("Our <b>very first</b> episode.", episodes.get(2).getDescription());
+        assertEquals("smalltalk-1", episodes.get(2).getGuid());
+
+        for (Episode episode : episodes)
+            assertNotNull(episode.getPubDate());
+    }
+
+    public final void testItunes() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse("itunes.xml");
+
+        assertEquals("The Example Hour", podcast.getName());
+        assertEquals("http://itunes.example.com/artwork.jpg", podcast.getLogoUrl());
+        assertFalse(podcast.isExplicit());
+        assertEquals(25, podcast.getEpisodeCount());
+
+        for (Episode episode : podcast.getEpisodes()) {
+            final int number = Integer.parseInt(episode.getName().split(":")[0]);
+
+            assertNotNull(episode.getPubDate());
+            assertNotNull(episode.getDescription());
+            assertTrue(episode.getLongDescription().startsWith("<p>"));
+            assertEquals(number % 4 == 0, episode.isExplicit());
+            assertEquals("http://media.example.com/itunes/episode-" + number
+                    + ".mp3?source=feed", episode.getMediaUrl());
+            // Every fifth episode has an empty duration
+            assertEquals(number % 5 != 3, episode.getDuration() > 0);
+        }
+    }
+
+    public final void testHuge() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse("huge.xml");
+        assertEquals(520, podcast.getEpisodeCount());
+
+        // Newest first, so the incremental parse keeps all the instances
+        final List<Episode> episodes = podcast.getEpisodes();
+        parse(podcast, "huge.xml", true);
+        assertEquals(episodes.size(), podcast.getEpisodeCount());
+
+        for (int index = 0; index < episodes.size(); index++) {
+            assertSame(episodes.get(index), podcast.getEpisodes().get(index));
+
+            if (index > 0)
+                assertTrue(episodes.get(index).compareTo(episodes.get(index - 1)) > 0);
+        }
+    }
+
+    public final void testAtomish() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse("atomish.xml");
+
+        assertEquals("Open Lectures", podcast.getName());
+        assertEquals("http://lectures.example.org/logo.png", podcast.getLogoUrl());
+        assertEquals(12, podcast.getEpisodeCount());
+
+        final Episode first = podcast.getEpisodes().get(0);
+        assertTrue(first.getName().startsWith("Lecture 12 ("));
+        assertEquals("http://lectures.example.org/media/lecture-12.m4a", first.getMediaUrl());
+
+        // Dublin Core dates in various ISO formats
+        for (Episode episode : podcast.getEpisodes()) {
+            assertNotNull(episode.getPubDate());
+            assertNull(episode.getGuid());
+        }
+    }
+
+    public final void testMalformed() throws IOException {
+        final Podcast podcast = new Podcast(null, "http://broken.example.com/feed");
+
+        try {
+            parse(podcast, "malformed.xml", false);
+            fail("Malformed feed should not parse");
+        } catch (XmlPullParserException e) {
+            // Expected, no episodes are added
+            assertEquals(0, podcast.getEpisodeCount());
+        }
+    }
+
+    public final void testGetEpisodes() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse("itunes.xml");
+        final List<Episode> episodes = podcast.getEpisodes();
+        assertSame(episodes, podcast.getEpisodes());
+
+        try {
+            episodes.remove(0);
+            fail("Episode list should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+
+        // Lists handed out before do not change on re-load
+        parse(podcast, "small.xml", false);
+        assertEquals(25, episodes.size());
+        assertNotSame(episodes, podcast.getEpisodes());
+        assertEquals(3, podcast.getEpisodeCount());
+
+        // Nor when the new feed fails to parse
+        final List<Episode> parsed = podcast.getEpisodes();
+        try {
+            parse(podcast, "malformed.xml", false);
+            fail("Malformed feed should not parse");
+        } catch (XmlPullParserException e) {
+            assertSame(parsed, podcast.getEpisodes());
+        }
+    }
+
+    private Podcast parse(String feed) throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://corpus.example.com/" + feed);
+        parse(podcast, feed, false);
+
+        return podcast;
+    }
+
+    private void parse(Podcast podcast, String feed, boolean incremental)
+            throws XmlPullParserException, IOException {
+        final InputStream in = getInstrumentation().getContext().getAssets()
+                .open("feeds/" + feed);
+        final XmlPullParser parser = ParserUtils.getParser(true);
+
+        try {
+            parser.setInput(in, null);
+            podcast.parse(parser, incremental);
+        } finally {
+            ParserUtils.releaseParser(parser);
+            in.close();
+        }
+    }
+}
@@ -7,12 +7,16 @@ import android.test.InstrumentationTestCase;
 import android.test.suitebuilder.annotation.MediumTest;
 import android.util.Base64;
 
+import net.alliknow.podcatcher.model.PodcastSnapshotStore;
 import net.alliknow.podcatcher.model.test.Utils;
+import net.alliknow.podcatcher.model.types.Episode;
 import net.alliknow.podcatcher.model.types.Podcast;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @SuppressWarnings("javadoc")
 public class PodcastTest extends InstrumentationTestCase {
@@ -169,6 +173,32 @@ public class PodcastTest extends InstrumentationTestCase {
                         Base64.NO_WRAP));
     }
 
+    public final void testSetCacheValidators() {
+        Podcast podcast = new Podcast(null, null);
+        assertFalse(podcast.setCacheValidators(null, null));
+        assertTrue(podcast.setCacheValidators("\"abc\"", null));
+        assertFalse(podcast.setCacheValidators(new String("\"abc\""), null));
+        assertTrue(podcast.setCacheValidators("\"abc\"", "Sun, 17 Nov 2013 00:00:00 GMT"));
+        assertTrue(podcast.setCacheValidators(null, "Sun, 17 Nov 2013 00:00:00 GMT"));
+        assertEquals("Sun, 17 Nov 2013 00:00:00 GMT", podcast.getLastModified());
+    }
+
+    public final void testFailedLoadAttempts() {
+        Podcast podcast = new Podcast(null, null);
+        podcast.setFailedLoadAttemptCount(3);
+        assertEquals(3, podcast.getFailedLoadAttemptCount());
+        assertEquals(0, podcast.getSessionFailedLoadAttemptCount());
+
+        podcast.incrementFailedLoadAttempts();
+        assertEquals(4, podcast.getFailedLoadAttemptCount());
+        assertEquals(1, podcast.getSessionFailedLoadAttemptCount());
+
+        podcast.resetFailedLoadAttempts();
+        assertEquals(0, podcast.getFailedLoadAttemptCount());
+        assertEquals(0, podcast.getSessionFailedLoadAttemptCount());
+        assertEquals(-1, podcast.getRetryAfter());
+    }
+
     public final void testToAbsoluteUrl() {
         String url = "http://some-server.com/feeds/podcast.xml";
         Podcast dummy = new Podcast(null, url);
@@ -220,4 +250,57 @@ public class PodcastTest extends InstrumentationTestCase {
         assertEquals("http://feeds.feedburner.com/TestPodcast",
                 new Podcast(null, "FB:TestPodcast?format=xml").getUrl());
     }
+
+    public final void testSnapshot() throws IOException {
+        Podcast tal = new Podcast(null,
+                "http://feeds.thisamericanlife.org/talpodcast");
+        Utils.loadAndWait(tal);
+
+        final List<String> descriptions = new ArrayList<>();
+        for (Episode episode : tal.getEpisodes())
+            descriptions.add(episode.getDescription() + episode.getLongDescription());
+
+        final PodcastSnapshotStore store =
+                new PodcastSnapshotStore(getInstrumentation().getTargetContext());
+        store.write(tal);
+        assertTrue(store.exists(tal));
+
+        Podcast restored = new Podcast(null,
+                "http://feeds.thisamericanlife.org/talpodcast");
+        assertTrue(store.read(restored));
+        assertEquals(tal.getName(), restored.getName());
+        assertEquals(tal.getLogoUrl(), restored.getLogoUrl());
+        assertEquals(tal.getLastLoaded(), restored.getLastLoaded());
+        assertEquals(tal.getEpisodes(), restored.getEpisodes());
+
+        for (int index = 0; index < tal.getEpisodeCount(); index++) {
+            final Episode episode = tal.getEpisodes().get(index);
+            final Episode restoredEpisode = restored.getEpisodes().get(index);
+
+            assertEquals(restored, restoredEpisode.getPodcast());
+            assertEquals(episode.getName(), restoredEpisode.getName());
+            assertEquals(episode.getGuid(), restoredEpisode.getGuid());
+            assertEquals(episode.getPubDate(), restoredEpisode.getPubDate());
+            assertEquals(episode.getDuration(), restoredEpisode.getDuration());
+            assertEquals(descriptions.get(index),
+                    episode.getDescription() + episode.getLongDescription());
+            assertEquals(descriptions.get(index),
+                    restoredEpisode.getDescription() + restoredEpisode.getLongDescription());
+            assertEquals(episode.getPositionInPodcast(),
+                    restoredEpisode.getPositionInPodcast());
+        }
+
+        // Snapshots do not override loaded content
+        assertFalse(store.read(tal));
+
+        // Descriptions survive the snapshot's deletion
+        store.delete(restored);
+        assertFalse(store.exists(restored));
+        for (int index = 0; index < restored.getEpisodeCount(); index++) {
+            final Episode restoredEpisode = restored.getEpisodes().get(index);
+
+            assertEquals(descriptions.get(index),
+                    restoredEpisode.getDescription() + restoredEpisode.getLongDescription());
+        }
+    }
 }